@@ -0,0 +1,108 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     FrameStats.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @ClassName: FrameStats
+ * @Function: 时间卡尺的绘制统计：绘制帧数、刷新请求次数和面积、每帧绘制耗时和绘制的刻度数，
+ *            通过{@link TimeControlView#setFrameStats}设置，记录过程中不分配内存
+ */
+public class FrameStats {
+	/**
+	 * 最多记录的帧耗时个数，超过后覆盖最早的记录
+	 */
+	private static final int MAX_FRAMES = 4096;
+
+	private final long[] drawNanos = new long[MAX_FRAMES];
+	private int frameCount;
+	private int invalidateCount;
+	private long invalidatedArea;
+	private long totalDrawNanos;
+	private long totalTicks;
+
+	/** 清空统计 */
+	public void reset() {
+		frameCount = 0;
+		invalidateCount = 0;
+		invalidatedArea = 0;
+		totalDrawNanos = 0;
+		totalTicks = 0;
+	}
+
+	void onInvalidate(int left, int top, int right, int bottom) {
+		invalidateCount++;
+		if (right > left && bottom > top) {
+			invalidatedArea += (long) (right - left) * (bottom - top);
+		}
+	}
+
+	void onFrame(long nanos, int ticks) {
+		drawNanos[frameCount % MAX_FRAMES] = nanos;
+		frameCount++;
+		totalDrawNanos += nanos;
+		totalTicks += ticks;
+	}
+
+	/** 绘制的帧数 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/** 请求刷新的次数 */
+	public int getInvalidateCount() {
+		return invalidateCount;
+	}
+
+	/** 请求刷新的总面积，像素。只是请求的面积，硬件加速下实际重绘的是整个View */
+	public long getInvalidatedArea() {
+		return invalidatedArea;
+	}
+
+	/** 所有帧的绘制总耗时，纳秒 */
+	public long getTotalDrawNanos() {
+		return totalDrawNanos;
+	}
+
+	/** 所有帧绘制的刻度总数 */
+	public long getTotalTicks() {
+		return totalTicks;
+	}
+
+	/**
+	 * @MethodName: getDrawNanosPercentile
+	 * @Function: 得到帧绘制耗时的百分位数，只统计最近{@link #MAX_FRAMES}帧
+	 * @param percentile
+	 *            0~100
+	 * @return 纳秒，没有绘制时返回0
+	 */
+	public long getDrawNanosPercentile(int percentile) {
+		int count = Math.min(frameCount, MAX_FRAMES);
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(drawNanos, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US,
+				"frames=%d invalidates=%d area=%d ticks=%d total=%.2fms "
+						+ "p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+				frameCount, invalidateCount, invalidatedArea, totalTicks,
+				totalDrawNanos / 1e6, getDrawNanosPercentile(50) / 1e6,
+				getDrawNanosPercentile(90) / 1e6,
+				getDrawNanosPercentile(99) / 1e6,
+				getDrawNanosPercentile(100) / 1e6);
+	}
+}
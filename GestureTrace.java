@@ -0,0 +1,298 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     GestureTrace.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.view.MotionEvent;
+
+/**
+ * @ClassName: GestureTrace
+ * @Function: 录制的手势轨迹，由{@link GestureTraceReplayer}回放到{@link TimeControlView}
+ *            <Li>可以在OnTouchListener中调用{@link #add(MotionEvent)}录制真实手势</Li>
+ *            <Li>JSON格式：{"name":"drag","samples":[{"t":0,"action":0,"x":[540],"y":[120]},...]}，
+ *            t为相对第一个事件的毫秒数，action为{@link MotionEvent#getAction()}</Li>
+ *            <Li>{@link #standardTraces}给出一组标准轨迹，用于比较每次修改前后的绘制性能，
+ *            回放时的数据由{@link #standardMiddleTime}和{@link #standardPeriods}给出。
+ *            1080x510下导出的JSON见仓库traces目录</Li>
+ */
+public class GestureTrace {
+	/**
+	 * 两个事件之间的间隔，与60fps的屏幕刷新一致
+	 */
+	private static final long FRAME_MS = 16;
+	private static final long HOUR_MS = 60 * 60 * 1000L;
+
+	/** 标准轨迹的View宽度 */
+	public static final int STANDARD_WIDTH = 1080;
+	/** 标准轨迹的View高度 */
+	public static final int STANDARD_HEIGHT = 510;
+	/** 标准轨迹回放时使用的时区，刻度和日期文字与时区有关 */
+	public static final String STANDARD_TIME_ZONE = "Asia/Shanghai";
+
+	/**
+	 * 一个触摸事件
+	 */
+	static final class Sample {
+		final long time;
+		final int action;
+		final float[] x, y;
+
+		Sample(long time, int action, float[] x, float[] y) {
+			this.time = time;
+			this.action = action;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	private final String name;
+	private final List<Sample> samples = new ArrayList<Sample>();
+	private long firstEventTime = -1;
+
+	public GestureTrace(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	List<Sample> getSamples() {
+		return samples;
+	}
+
+	/** 录制一个真实的触摸事件 */
+	public void add(MotionEvent event) {
+		if (firstEventTime < 0) {
+			firstEventTime = event.getEventTime();
+		}
+		int count = event.getPointerCount();
+		float[] x = new float[count];
+		float[] y = new float[count];
+		for (int i = 0; i < count; i++) {
+			x[i] = event.getX(i);
+			y[i] = event.getY(i);
+		}
+		samples.add(new Sample(event.getEventTime() - firstEventTime, event
+				.getAction(), x, y));
+	}
+
+	/**
+	 * @MethodName: add
+	 * @Function: 添加一个事件
+	 * @param time
+	 *            相对第一个事件的毫秒数
+	 * @param action
+	 *            {@link MotionEvent#getAction()}，包括手指序号
+	 * @param x
+	 *            每个手指的x坐标
+	 * @param y
+	 *            每个手指的y坐标
+	 */
+	public void add(long time, int action, float[] x, float[] y) {
+		if (x == null || y == null || x.length != y.length || x.length == 0) {
+			throw new IllegalArgumentException("the pointer coords is invalid");
+		}
+		samples.add(new Sample(time, action, x, y));
+	}
+
+	/** 最后一个事件的时间 */
+	public long getDuration() {
+		return samples.isEmpty() ? 0 : samples.get(samples.size() - 1).time;
+	}
+
+	public String toJson() throws JSONException {
+		JSONArray array = new JSONArray();
+		for (Sample sample : samples) {
+			JSONArray x = new JSONArray();
+			JSONArray y = new JSONArray();
+			for (int i = 0; i < sample.x.length; i++) {
+				x.put(sample.x[i]);
+				y.put(sample.y[i]);
+			}
+			JSONObject object = new JSONObject();
+			object.put("t", sample.time);
+			object.put("action", sample.action);
+			object.put("x", x);
+			object.put("y", y);
+			array.put(object);
+		}
+		JSONObject json = new JSONObject();
+		json.put("name", name);
+		json.put("samples", array);
+		return json.toString();
+	}
+
+	public static GestureTrace fromJson(String json) throws JSONException {
+		JSONObject object = new JSONObject(json);
+		GestureTrace trace = new GestureTrace(object.optString("name", ""));
+		JSONArray array = object.getJSONArray("samples");
+		for (int i = 0; i < array.length(); i++) {
+			JSONObject sample = array.getJSONObject(i);
+			JSONArray x = sample.getJSONArray("x");
+			JSONArray y = sample.getJSONArray("y");
+			if (x.length() != y.length()) {
+				throw new JSONException("sample " + i
+						+ " has different x and y counts");
+			}
+			float[] xs = new float[x.length()];
+			float[] ys = new float[y.length()];
+			for (int j = 0; j < xs.length; j++) {
+				xs[j] = (float) x.getDouble(j);
+				ys[j] = (float) y.getDouble(j);
+			}
+			trace.add(sample.getLong("t"), sample.getInt("action"), xs, ys);
+		}
+		return trace;
+	}
+
+	/**
+	 * @MethodName: standardTraces
+	 * @Function: 标准手势轨迹：慢速拖动、快速来回拖动、缩小到5天、放大到1小时、在5天视图下快速拖动多天
+	 * @param width
+	 *            View宽度
+	 * @param height
+	 *            View高度
+	 */
+	public static List<GestureTrace> standardTraces(int width, int height) {
+		float y = height * 0.6f;
+		List<GestureTrace> traces = new ArrayList<GestureTrace>();
+
+		GestureTrace drag = new GestureTrace("drag");
+		drag.drag(0, width * 0.8f, width * 0.2f, y, 30);
+		traces.add(drag);
+
+		GestureTrace scrub = new GestureTrace("fast_scrub");
+		long time = 0;
+		for (int i = 0; i < 10; i++) {
+			float from = i % 2 == 0 ? width * 0.9f : width * 0.1f;
+			time = scrub.drag(time, from, width - from, y, 6) + FRAME_MS;
+		}
+		traces.add(scrub);
+
+		GestureTrace pinchIn = new GestureTrace("pinch_in");
+		time = 0;
+		for (int i = 0; i < 6; i++) {
+			time = pinchIn.pinch(time, width * 0.4f, width * 0.05f, width,
+					y, 20) + FRAME_MS;
+		}
+		traces.add(pinchIn);
+
+		GestureTrace pinchOut = new GestureTrace("pinch_out");
+		time = 0;
+		for (int i = 0; i < 6; i++) {
+			time = pinchOut.pinch(time, width * 0.05f, width * 0.4f, width,
+					y, 20) + FRAME_MS;
+		}
+		traces.add(pinchOut);
+
+		GestureTrace multiDay = new GestureTrace("multi_day_scrub");
+		time = 0;
+		for (int i = 0; i < 6; i++) {
+			time = multiDay.pinch(time, width * 0.4f, width * 0.05f, width,
+					y, 20) + FRAME_MS;
+		}
+		for (int i = 0; i < 20; i++) {
+			time = multiDay.drag(time, width * 0.95f, width * 0.05f, y, 4)
+					+ FRAME_MS;
+		}
+		traces.add(multiDay);
+		return traces;
+	}
+
+	/** 标准轨迹回放时的初始中间时间：2015-11-17 20:00（Asia/Shanghai），也作为录像中的当前时间 */
+	public static long standardMiddleTime() {
+		return 1447761600000L;
+	}
+
+	/**
+	 * @MethodName: standardPeriods
+	 * @Function: 标准轨迹回放时的回看时间段：以{@link #standardMiddleTime}为基准前后各40段，每3小时一段，每段2小时
+	 * @return 开始时间到结束时间，毫秒字符串，可直接传给{@link TimeControlView#setRecordPeriodsTime}
+	 */
+	public static HashMap<String, String> standardPeriods() {
+		long base = standardMiddleTime();
+		HashMap<String, String> periods = new HashMap<String, String>();
+		for (int i = -40; i < 40; i++) {
+			long start = base + i * 3 * HOUR_MS;
+			periods.put(String.valueOf(start),
+					String.valueOf(start + 2 * HOUR_MS));
+		}
+		return periods;
+	}
+
+	/**
+	 * @MethodName: standardLivePeriods
+	 * @Function: 录像中的回看时间段：{@link #standardPeriods}中当前时间之前的部分，加上从当前时间前30分钟开始、
+	 *            到当前时间前5分钟为止的录像中时间段，由{@link GestureTraceReplayer#replayLivePeriod}延长
+	 */
+	public static HashMap<String, String> standardLivePeriods() {
+		long now = standardMiddleTime();
+		HashMap<String, String> periods = new HashMap<String, String>();
+		for (Map.Entry<String, String> entry : standardPeriods().entrySet()) {
+			if (Long.parseLong(entry.getKey()) < now) {
+				periods.put(entry.getKey(), entry.getValue());
+			}
+		}
+		periods.put(String.valueOf(standardLiveStart()),
+				String.valueOf(now - 5 * 60 * 1000L));
+		return periods;
+	}
+
+	/** {@link #standardLivePeriods}中录像中时间段的开始时间 */
+	public static long standardLiveStart() {
+		return standardMiddleTime() - 30 * 60 * 1000L;
+	}
+
+	// 单指从fromX拖到toX，返回最后一个事件的时间
+	private long drag(long time, float fromX, float toX, float y, int steps) {
+		add(time, MotionEvent.ACTION_DOWN, new float[] { fromX },
+				new float[] { y });
+		for (int i = 1; i <= steps; i++) {
+			time += FRAME_MS;
+			add(time, MotionEvent.ACTION_MOVE, new float[] { fromX
+					+ (toX - fromX) * i / steps }, new float[] { y });
+		}
+		add(time, MotionEvent.ACTION_UP, new float[] { toX },
+				new float[] { y });
+		return time;
+	}
+
+	// 双指以屏幕中心对称缩放，半距离从fromHalf变到toHalf，返回最后一个事件的时间
+	private long pinch(long time, float fromHalf, float toHalf, int width,
+			float y, int steps) {
+		float center = width / 2f;
+		float[] ys = new float[] { y, y };
+		add(time, MotionEvent.ACTION_DOWN, new float[] { center - fromHalf },
+				new float[] { y });
+		add(time, MotionEvent.ACTION_POINTER_DOWN
+				| (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), new float[] {
+				center - fromHalf, center + fromHalf }, ys);
+		float half = fromHalf;
+		for (int i = 1; i <= steps; i++) {
+			time += FRAME_MS;
+			half = fromHalf + (toHalf - fromHalf) * i / steps;
+			add(time, MotionEvent.ACTION_MOVE, new float[] { center - half,
+					center + half }, ys);
+		}
+		add(time, MotionEvent.ACTION_POINTER_UP
+				| (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), new float[] {
+				center - half, center + half }, ys);
+		add(time, MotionEvent.ACTION_UP, new float[] { center - half },
+				new float[] { y });
+		return time;
+	}
+}
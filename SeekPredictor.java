@@ -0,0 +1,187 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     SeekPredictor.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+/**
+ * @ClassName: SeekPredictor
+ * @Function: 根据拖动速度预测手势停止时的中间时间，并吸附到最近的回看时间段
+ *            <Li>速度由最近{@link #WINDOW_MS}毫秒内的样本做二次最小二乘拟合得到</Li>
+ *            <Li>假设手指以固定减速度停下：停止位置 = 当前位置 + v*|v| / (2*减速度)</Li>
+ *            <Li>不依赖Android类，可以直接在JVM上用合成的手势样本验证预测精度</Li>
+ */
+public class SeekPredictor {
+	/**
+	 * 计算速度使用的时间窗口，毫秒
+	 */
+	static final long WINDOW_MS = 100;
+	/**
+	 * 默认的手指减速度，像素/秒²
+	 */
+	public static final float DEFAULT_DECELERATION = 8000f;
+	private static final int MAX_SAMPLES = 20;
+
+	private final long[] eventTimes = new long[MAX_SAMPLES];
+	private final long[] middleTimes = new long[MAX_SAMPLES];
+	private int count;
+	private int next;
+	private float deceleration = DEFAULT_DECELERATION;
+
+	/** 开始新的手势 */
+	public void reset() {
+		count = 0;
+		next = 0;
+	}
+
+	/** 设置手指减速度，像素/秒² */
+	public void setDeceleration(float deceleration) {
+		if (deceleration <= 0) {
+			throw new IllegalArgumentException("deceleration must be positive");
+		}
+		this.deceleration = deceleration;
+	}
+
+	/**
+	 * @MethodName: addSample
+	 * @Function: 添加一个样本
+	 * @param eventTime
+	 *            事件时间，毫秒
+	 * @param middleTime
+	 *            该事件处理后的中间时间，毫秒
+	 */
+	public void addSample(long eventTime, long middleTime) {
+		eventTimes[next] = eventTime;
+		middleTimes[next] = middleTime;
+		next = (next + 1) % MAX_SAMPLES;
+		if (count < MAX_SAMPLES) {
+			count++;
+		}
+	}
+
+	/**
+	 * @MethodName: getVelocity
+	 * @Function: 最近一个样本处中间时间的变化速度。对窗口内样本做二次最小二乘拟合 m = a + b*t + c*t²，
+	 *            以最近样本为t=0时速度即b；样本不足3个时退化为直线拟合
+	 * @return 每经过1毫秒中间时间变化的毫秒数，样本不足时为0
+	 */
+	public double getVelocity() {
+		if (count < 2) {
+			return 0;
+		}
+		int last = (next - 1 + MAX_SAMPLES) % MAX_SAMPLES;
+		long latest = eventTimes[last];
+		long baseMiddle = middleTimes[last];
+		// s[k] = Σt^k，r[k] = Σm*t^k
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, r0 = 0, r1 = 0, r2 = 0;
+		for (int i = 0; i < count; i++) {
+			int index = (last - i + MAX_SAMPLES) % MAX_SAMPLES;
+			double t = eventTimes[index] - latest;
+			if (-t > WINDOW_MS) {
+				break;
+			}
+			double m = middleTimes[index] - baseMiddle;
+			double t2 = t * t;
+			s0++;
+			s1 += t;
+			s2 += t2;
+			s3 += t2 * t;
+			s4 += t2 * t2;
+			r0 += m;
+			r1 += m * t;
+			r2 += m * t2;
+		}
+		if (s0 >= 3) {
+			// 克莱姆法则解正规方程，求b
+			double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2)
+					+ s2 * (s1 * s3 - s2 * s2);
+			if (det != 0) {
+				return (s0 * (r1 * s4 - s3 * r2) - r0 * (s1 * s4 - s3 * s2) + s2
+						* (s1 * r2 - r1 * s2))
+						/ det;
+			}
+		}
+		double denominator = s0 * s2 - s1 * s1;
+		if (s0 < 2 || denominator == 0) {
+			return 0;
+		}
+		return (s0 * r1 - s1 * r0) / denominator;
+	}
+
+	/**
+	 * @MethodName: predict
+	 * @Function: 预测手势停止时的中间时间
+	 * @param middleTime
+	 *            当前中间时间
+	 * @param msPerPx
+	 *            每像素代表的毫秒数，用于把像素减速度换算成时间
+	 * @return 预测的中间时间
+	 */
+	public long predict(long middleTime, double msPerPx) {
+		double velocity = getVelocity();
+		if (velocity == 0 || msPerPx <= 0) {
+			return middleTime;
+		}
+		// 像素/秒² 换算成 中间时间毫秒/毫秒²
+		double timeDeceleration = deceleration / 1e6 * msPerPx;
+		return middleTime
+				+ (long) (velocity * Math.abs(velocity) / (2 * timeDeceleration));
+	}
+
+	/**
+	 * @MethodName: findSegment
+	 * @Function: 找到离time最近的回看时间段
+	 * @param starts
+	 *            按开始时间排序的时间段开始时间
+	 * @param ends
+	 *            对应的结束时间
+	 * @return 时间段下标，没有时间段时返回-1
+	 */
+	public static int findSegment(long time, long[] starts, long[] ends) {
+		if (starts.length == 0) {
+			return -1;
+		}
+		// 最后一个开始时间<=time的时间段
+		int low = 0, high = starts.length - 1, before = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= time) {
+				before = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (before >= 0 && time <= ends[before]) {
+			return before;
+		}
+		int after = before + 1;
+		if (before < 0) {
+			return after;
+		}
+		if (after >= starts.length) {
+			return before;
+		}
+		return time - ends[before] <= starts[after] - time ? before : after;
+	}
+
+	/**
+	 * @MethodName: snap
+	 * @Function: 把time吸附到segment时间段内，已经在时间段内时不变
+	 */
+	public static long snap(long time, int segment, long[] starts, long[] ends) {
+		if (segment < 0) {
+			return time;
+		}
+		if (time < starts[segment]) {
+			return starts[segment];
+		}
+		if (time > ends[segment]) {
+			return ends[segment];
+		}
+		return time;
+	}
+}
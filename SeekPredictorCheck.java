@@ -0,0 +1,238 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     SeekPredictorCheck.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.util.Random;
+
+/**
+ * @ClassName: SeekPredictorCheck
+ * @Function: 用合成的手势样本检查{@link SeekPredictor}的速度、停止位置预测和时间段吸附
+ *            <Li>在桌面JVM上运行，SeekPredictor不依赖Android类</Li>
+ *            <Li>样本按8毫秒间隔生成，与常见的触摸事件频率一致；中间时间按10小时视图换算</Li>
+ *
+ *            <pre>
+ * javac -encoding UTF-8 -d out SeekPredictor.java SeekPredictorCheck.java
+ * java -cp out com.wulian.icam.view.widget.SeekPredictorCheck
+ * </pre>
+ */
+public class SeekPredictorCheck {
+	/**
+	 * 样本间隔，毫秒
+	 */
+	private static final int SAMPLE_MS = 8;
+	private static final int WIDTH = 1080;
+	/**
+	 * 10小时视图下每像素代表的毫秒数
+	 */
+	private static final double MS_PER_PX = 10 * 60 * 60 * 1000.0 / WIDTH;
+	/**
+	 * 2015-11-17 20:00 Asia/Shanghai
+	 */
+	private static final long START_TIME = 1447761600000L;
+	/**
+	 * 预测停止位置允许的误差，像素
+	 */
+	private static final double TOLERANCE_PX = 1;
+
+	private final StringBuilder failures = new StringBuilder();
+
+	public static void main(String[] args) {
+		try {
+			new SeekPredictorCheck().run();
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @MethodName: run
+	 * @Function: 依次检查匀速拖动、匀减速拖动、抖动、反向、停顿和时间段吸附
+	 * @throws IllegalStateException
+	 *             有任何一项检查不通过
+	 */
+	public void run() {
+		checkConstantVelocity(2000);
+		checkConstantVelocity(-2000);
+		checkDeceleration(3000);
+		checkDeceleration(-1500);
+		checkJitter(2000);
+		checkReversal();
+		checkPause();
+		checkFewSamples();
+		checkSegments();
+		if (failures.length() > 0) {
+			throw new IllegalStateException("SeekPredictor check failed:"
+					+ failures);
+		}
+	}
+
+	/**
+	 * @MethodName: checkConstantVelocity
+	 * @Function: 匀速拖动，速度应与实际速度一致，停止位置为当前位置加上按默认减速度停下的距离
+	 * @param pxPerSecond
+	 *            拖动速度，像素/秒，正数为中间时间增大的方向
+	 */
+	private void checkConstantVelocity(double pxPerSecond) {
+		SeekPredictor predictor = new SeekPredictor();
+		long middleTime = START_TIME;
+		for (int t = 0; t <= 200; t += SAMPLE_MS) {
+			middleTime = START_TIME + Math.round(pxPerSecond * t / 1000 * MS_PER_PX);
+			predictor.addSample(t, middleTime);
+		}
+		double stopPx = pxPerSecond * Math.abs(pxPerSecond)
+				/ (2 * SeekPredictor.DEFAULT_DECELERATION);
+		long expected = middleTime + Math.round(stopPx * MS_PER_PX);
+		checkPrediction("constant " + pxPerSecond + " px/s", predictor,
+				middleTime, expected);
+	}
+
+	/**
+	 * @MethodName: checkDeceleration
+	 * @Function: 手指以默认减速度减速，在停下之前取预测值，应与最终停止的位置一致
+	 * @param pxPerSecond
+	 *            初始拖动速度，像素/秒
+	 */
+	private void checkDeceleration(double pxPerSecond) {
+		double deceleration = SeekPredictor.DEFAULT_DECELERATION
+				* Math.signum(pxPerSecond);
+		double stopMs = pxPerSecond / deceleration * 1000;
+		// 在停下前一半时间处抬手之前的最后一个样本
+		int lastT = (int) (stopMs / 2) / SAMPLE_MS * SAMPLE_MS;
+		SeekPredictor predictor = new SeekPredictor();
+		long middleTime = START_TIME;
+		for (int t = 0; t <= lastT; t += SAMPLE_MS) {
+			middleTime = START_TIME + Math.round(decelerated(pxPerSecond,
+					deceleration, t) * MS_PER_PX);
+			predictor.addSample(t, middleTime);
+		}
+		long expected = START_TIME
+				+ Math.round(decelerated(pxPerSecond, deceleration, stopMs)
+						* MS_PER_PX);
+		checkPrediction("decelerating from " + pxPerSecond + " px/s",
+				predictor, middleTime, expected);
+	}
+
+	/**
+	 * 匀减速运动t毫秒后移动的像素
+	 */
+	private static double decelerated(double pxPerSecond, double deceleration,
+			double t) {
+		double seconds = t / 1000;
+		return pxPerSecond * seconds - deceleration * seconds * seconds / 2;
+	}
+
+	/**
+	 * @MethodName: checkJitter
+	 * @Function: 匀速拖动，每个样本叠加±1像素的触摸抖动，速度误差不超过5%
+	 */
+	private void checkJitter(double pxPerSecond) {
+		Random random = new Random(1);
+		SeekPredictor predictor = new SeekPredictor();
+		for (int t = 0; t <= 200; t += SAMPLE_MS) {
+			double px = pxPerSecond * t / 1000 + random.nextDouble() * 2 - 1;
+			predictor.addSample(t, START_TIME + Math.round(px * MS_PER_PX));
+		}
+		double velocity = predictor.getVelocity() / MS_PER_PX * 1000;
+		check("jitter " + pxPerSecond + " px/s: velocity " + (long) velocity
+				+ " px/s", Math.abs(velocity - pxPerSecond) <= pxPerSecond * 0.05);
+	}
+
+	/**
+	 * @MethodName: checkReversal
+	 * @Function: 拖动超过{@link SeekPredictor#WINDOW_MS}后反向匀速拖动，只按反向的速度预测
+	 */
+	private void checkReversal() {
+		SeekPredictor predictor = new SeekPredictor();
+		double pxPerSecond = 1500;
+		long middleTime = START_TIME;
+		int turn = 200;
+		for (int t = 0; t <= turn + 120; t += SAMPLE_MS) {
+			double px = t <= turn ? pxPerSecond * t / 1000 : pxPerSecond
+					* (2 * turn - t) / 1000;
+			middleTime = START_TIME + Math.round(px * MS_PER_PX);
+			predictor.addSample(t, middleTime);
+		}
+		double stopPx = pxPerSecond * pxPerSecond
+				/ (2 * SeekPredictor.DEFAULT_DECELERATION);
+		checkPrediction("reversal", predictor, middleTime, middleTime
+				- Math.round(stopPx * MS_PER_PX));
+	}
+
+	/**
+	 * @MethodName: checkPause
+	 * @Function: 快速拖动后按住不动超过{@link SeekPredictor#WINDOW_MS}，预测值为当前位置
+	 */
+	private void checkPause() {
+		SeekPredictor predictor = new SeekPredictor();
+		long middleTime = START_TIME;
+		for (int t = 0; t <= 300; t += SAMPLE_MS) {
+			if (t <= 150) {
+				middleTime = START_TIME + Math.round(3000.0 * t / 1000 * MS_PER_PX);
+			}
+			predictor.addSample(t, middleTime);
+		}
+		checkPrediction("pause", predictor, middleTime, middleTime);
+	}
+
+	/**
+	 * @MethodName: checkFewSamples
+	 * @Function: 样本不足2个时速度为0；重置后之前的样本不再参与计算
+	 */
+	private void checkFewSamples() {
+		SeekPredictor predictor = new SeekPredictor();
+		check("no samples", predictor.predict(START_TIME, MS_PER_PX) == START_TIME);
+		predictor.addSample(0, START_TIME);
+		check("one sample", predictor.getVelocity() == 0);
+		predictor.addSample(SAMPLE_MS, START_TIME + 1000);
+		check("two samples", predictor.getVelocity() > 0);
+		predictor.reset();
+		predictor.addSample(2 * SAMPLE_MS, START_TIME + 1000);
+		check("reset", predictor.getVelocity() == 0);
+	}
+
+	/**
+	 * @MethodName: checkSegments
+	 * @Function: 检查{@link SeekPredictor#findSegment}和{@link SeekPredictor#snap}，
+	 *            时间段为[100,200]、[300,400]、[600,700]
+	 */
+	private void checkSegments() {
+		long[] starts = new long[] { 100, 300, 600 };
+		long[] ends = new long[] { 200, 400, 700 };
+		// {时间, 时间段下标, 吸附后的时间}
+		long[][] cases = new long[][] { { 50, 0, 100 }, { 100, 0, 100 },
+				{ 150, 0, 150 }, { 200, 0, 200 }, { 250, 0, 200 },
+				{ 260, 1, 300 }, { 350, 1, 350 }, { 500, 1, 400 },
+				{ 520, 2, 600 }, { 800, 2, 700 } };
+		for (long[] c : cases) {
+			int segment = SeekPredictor.findSegment(c[0], starts, ends);
+			long snapped = SeekPredictor.snap(c[0], segment, starts, ends);
+			check("segment for " + c[0] + ": " + segment + ", snapped to "
+					+ snapped, segment == c[1] && snapped == c[2]);
+		}
+		long[] empty = new long[0];
+		int segment = SeekPredictor.findSegment(150, empty, empty);
+		check("no segments: " + segment, segment == -1
+				&& SeekPredictor.snap(150, segment, empty, empty) == 150);
+	}
+
+	private void checkPrediction(String name, SeekPredictor predictor,
+			long middleTime, long expected) {
+		long predicted = predictor.predict(middleTime, MS_PER_PX);
+		double errorPx = Math.abs(predicted - expected) / MS_PER_PX;
+		check(name + ": error " + String.format("%.3f", errorPx) + " px",
+				errorPx <= TOLERANCE_PX);
+	}
+
+	private void check(String result, boolean passed) {
+		System.out.println((passed ? "ok   " : "FAIL ") + result);
+		if (!passed) {
+			failures.append('\n').append(result);
+		}
+	}
+}
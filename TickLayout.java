@@ -0,0 +1,237 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     TickLayout.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.util.TimeZone;
+
+import com.wulian.icam.view.widget.TimeControlView.TimeUnit;
+
+/**
+ * @ClassName: TickLayout
+ * @Function: 时间卡尺刻度布局，计算一屏内每个刻度的位置、长度和文字。
+ *            <Li>所有结果保存在复用的基本类型数组中，{@link #compute}在稳定状态下不分配内存</Li>
+ *            <Li>时和分直接由本地时区偏移换算，不再经过SimpleDateFormat和缓存</Li>
+ */
+final class TickLayout {
+	static final long MINUTE_MS = 60 * 1000L;
+	static final long HOUR_MS = 60 * MINUTE_MS;
+	static final long DAY_MS = 24 * HOUR_MS;
+
+	/** 不绘制文字 */
+	static final int NO_LABEL = -1;
+	/**
+	 * 刻度文字表，下标为 小时*2 + (30分 ? 1 : 0)，即"00:00","00:30"..."23:30"
+	 */
+	private static final String[] LABELS = new String[48];
+	static {
+		for (int h = 0; h < 24; h++) {
+			// 不依赖TimeControlView的方法，使本类可以脱离Android环境运行
+			String hour = h < 10 ? "0" + h : String.valueOf(h);
+			LABELS[h * 2] = hour + ":00";
+			LABELS[h * 2 + 1] = hour + ":30";
+		}
+	}
+
+	private final TimeZone timeZone;
+
+	/** 刻度个数 */
+	int count;
+	/** 刻度的x坐标，从左到右 */
+	float[] x = new float[64];
+	/** 刻度代表的时间 */
+	long[] times = new long[64];
+	/** 刻度的线长 */
+	int[] lengths = new int[64];
+	/** 刻度文字在{@link #LABELS}中的下标，{@link #NO_LABEL}为不绘制 */
+	int[] labels = new int[64];
+
+	/** 本次布局的输入，用于判断是否需要重新计算 */
+	long middleTime;
+	int timeLength;
+	TimeUnit timeUnit;
+	int width;
+	/** 左右两边超出屏幕的布局宽度 */
+	int overscan;
+	/** 最小刻度之间的距离 */
+	float distance;
+	/** 每毫秒对应的像素 */
+	float pxPerMs;
+
+	TickLayout() {
+		this(TimeZone.getDefault());
+	}
+
+	TickLayout(TimeZone timeZone) {
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * @MethodName: compute
+	 * @Function: 根据中间时间、时间长度、时间单位和宽度计算刻度，输入不变时直接返回
+	 * @param middleTime
+	 *            中间时间，毫秒
+	 * @param timeLength
+	 *            一屏显示的总时间，分钟
+	 * @param timeUnit
+	 *            时间单位
+	 * @param width
+	 *            绘制宽度
+	 */
+	void compute(long middleTime, int timeLength, TimeUnit timeUnit, int width) {
+		compute(middleTime, timeLength, timeUnit, width, 0);
+	}
+
+	/**
+	 * @MethodName: compute
+	 * @Function: 同{@link #compute(long, int, TimeUnit, int)}，刻度范围向左右各多算overscan像素，
+	 *            x坐标仍然相对于屏幕，最左边的刻度可以为负数
+	 */
+	void compute(long middleTime, int timeLength, TimeUnit timeUnit,
+			int width, int overscan) {
+		if (this.timeUnit == timeUnit && this.middleTime == middleTime
+				&& this.timeLength == timeLength && this.width == width
+				&& this.overscan == overscan) {
+			return;
+		}
+		this.middleTime = middleTime;
+		this.timeLength = timeLength;
+		this.timeUnit = timeUnit;
+		this.width = width;
+		this.overscan = overscan;
+		int unit = timeUnit.getTimeUnit();
+		long unitMs = unit * MINUTE_MS;
+		distance = width * 1.0f / (timeLength / unit);
+		pxPerMs = distance / unitMs;
+
+		// 一天的分钟数能被所有时间单位整除，所以刻度都对齐到当天0点
+		long rem = floorMod(toLocal(middleTime), DAY_MS) % unitMs;
+		long baseTime = middleTime - rem;
+		float drawDistance = width / 2 - rem * pxPerMs;
+		int left = (int) ((drawDistance + overscan) / distance);
+		float start = drawDistance - left * distance;
+		long time = baseTime - left * unitMs;
+		float end = width + overscan;
+
+		int capacity = (int) ((end - start) / distance) + 2;
+		ensureCapacity(capacity);
+		int n = 0;
+		for (float pos = start; pos <= end && n < capacity; pos += distance) {
+			long local = toLocal(time);
+			int timeM = (int) floorMod(local / MINUTE_MS, 60);
+			int timeH = (int) floorMod(local / HOUR_MS, 24);
+			int lineLength = getLineLength(timeUnit, timeH, timeM);
+			x[n] = pos;
+			times[n] = time;
+			lengths[n] = lineLength;
+			labels[n] = getLabel(timeUnit, lineLength, timeH, timeM);
+			n++;
+			time += unitMs;
+		}
+		count = n;
+	}
+
+	/** 使下一次{@link #compute}强制重新计算 */
+	void reset() {
+		timeUnit = null;
+	}
+
+	static String getLabelText(int label) {
+		return LABELS[label];
+	}
+
+	private long toLocal(long time) {
+		return time + timeZone.getOffset(time);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (x.length >= capacity) {
+			return;
+		}
+		x = new float[capacity];
+		times = new long[capacity];
+		lengths = new int[capacity];
+		labels = new int[capacity];
+	}
+
+	/**
+	 * @MethodName: getLineLength
+	 * @Function: 根据不同的时间单位和时分来计算当前画线的长度
+	 * @return 该绘图点处的绘图长度
+	 */
+	static int getLineLength(TimeUnit timeUnit, int timeH, int timeM) {
+		switch (timeUnit) {
+		case TWENTY_FOUR_MINUTE:
+			if (timeH % 2 == 0) {
+				if (timeH == 0 && timeM == 0) {
+					return TimeControlView.DAY_LENGTH;
+				} else if (timeH % 12 == 0 && timeM == 0) {
+					return TimeControlView.HOUR_LENGTH;
+				} else if (timeH % 2 == 0 && timeM == 0) {
+					return TimeControlView.MIDDILE_LENGTH;
+				} else if (timeM % 24 == 0) {
+					return TimeControlView.MINI_LENGTH;
+				}
+			}
+
+		case TWO_MINUTE:
+			if (timeH == 0 && timeM == 0) {
+				return TimeControlView.DAY_LENGTH;
+			} else if (timeM == 0) {
+				return TimeControlView.HOUR_LENGTH;
+			} else if (timeM % 10 == 0) {
+				return TimeControlView.MIDDILE_LENGTH;
+			} else if (timeM % 2 == 0) {
+				return TimeControlView.MINI_LENGTH;
+			}
+		case ONE_MINUTE:
+			if (timeH == 0 && timeM == 0) {
+				return TimeControlView.DAY_LENGTH;
+			} else if (timeM % 30 == 0) {
+				return TimeControlView.HOUR_LENGTH;
+			} else if (timeM % 5 == 0) {
+				return TimeControlView.MIDDILE_LENGTH;
+			} else {
+				return TimeControlView.MINI_LENGTH;
+			}
+		}
+		return TimeControlView.DAY_LENGTH;
+	}
+
+	private static int getLabel(TimeUnit timeUnit, int lineLength, int timeH,
+			int timeM) {
+		switch (timeUnit) {
+		case TWENTY_FOUR_MINUTE:
+		case TWO_MINUTE:
+			if (lineLength == TimeControlView.DAY_LENGTH
+					|| lineLength == TimeControlView.HOUR_LENGTH) {
+				return timeH * 2;
+			}
+			break;
+		case ONE_MINUTE:
+			if (lineLength == TimeControlView.DAY_LENGTH) {
+				return timeH * 2;
+			} else if (lineLength == TimeControlView.HOUR_LENGTH) {
+				return timeH * 2 + (timeM == 30 ? 1 : 0);
+			}
+			break;
+		}
+		return NO_LABEL;
+	}
+
+	static long floorDiv(long x, long y) {
+		long r = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) {
+			r--;
+		}
+		return r;
+	}
+
+	static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     TickLayoutAllocationCheck.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.lang.reflect.Method;
+
+import com.wulian.icam.view.widget.TimeControlView.TimeUnit;
+
+/**
+ * @ClassName: TickLayoutAllocationCheck
+ * @Function: 检查{@link TickLayout#compute}在滚动时每帧分配的内存，每个时间单位的最大和最小缩放级别都必须为0
+ *            <Li>在桌面JVM上运行，用ThreadMXBean统计当前线程分配的字节数，不依赖Android类</Li>
+ *            <Li>ThreadMXBean通过反射获取，Android上编译不受影响，运行时会抛出UnsupportedOperationException</Li>
+ *
+ *            <pre>
+ * javac -cp android.jar -d out TimeControlView.java TickLayout.java TickLayoutAllocationCheck.java
+ * java -cp out com.wulian.icam.view.widget.TickLayoutAllocationCheck
+ * </pre>
+ */
+public class TickLayoutAllocationCheck {
+	/**
+	 * 预热的帧数，使compute被JIT编译
+	 */
+	private static final int WARMUP_FRAMES = 20000;
+	/**
+	 * 每轮统计的帧数
+	 */
+	private static final int FRAMES = 5000;
+	/**
+	 * 统计轮数，取最小值排除GC和JIT的干扰
+	 */
+	private static final int ROUNDS = 5;
+	/**
+	 * 每帧滚动的像素
+	 */
+	private static final int SCROLL_PX = 7;
+	private static final int WIDTH = 1080;
+	/**
+	 * 2015-11-17 00:00 UTC
+	 */
+	private static final long START_TIME = 1447718400000L;
+
+	private final Object threadBean;
+	private final Method allocatedBytes;
+	private final Object[] threadId;
+
+	public static void main(String[] args) {
+		try {
+			new TickLayoutAllocationCheck().run();
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	public TickLayoutAllocationCheck() {
+		try {
+			Class<?> factory = Class
+					.forName("java.lang.management.ManagementFactory");
+			threadBean = factory.getMethod("getThreadMXBean").invoke(null);
+			Class<?> beanClass = Class
+					.forName("com.sun.management.ThreadMXBean");
+			allocatedBytes = beanClass.getMethod("getThreadAllocatedBytes",
+					long.class);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException(
+					"ThreadMXBean allocation counter is not available", e);
+		}
+		threadId = new Object[] { Long.valueOf(Thread.currentThread()
+				.getId()) };
+	}
+
+	/**
+	 * @MethodName: run
+	 * @Function: 依次检查每个时间单位的最大和最小缩放级别，不带和带overscan各一次
+	 * @throws IllegalStateException
+	 *             有任何一种情况每帧分配的内存不为0
+	 */
+	public void run() {
+		Object[][] cases = new Object[][] {
+				{ TimeUnit.TWENTY_FOUR_MINUTE, TimeControlView.FIVE_DAY },
+				{ TimeUnit.TWENTY_FOUR_MINUTE, TimeControlView.ONE_DAY },
+				{ TimeUnit.TWO_MINUTE, TimeControlView.TEN_HOUR },
+				{ TimeUnit.TWO_MINUTE, TimeControlView.TWO_HOUR },
+				{ TimeUnit.ONE_MINUTE, TimeControlView.FIVE_HOUR },
+				{ TimeUnit.ONE_MINUTE, TimeControlView.ONE_HOUR } };
+		StringBuilder failures = new StringBuilder();
+		for (Object[] c : cases) {
+			TimeUnit timeUnit = (TimeUnit) c[0];
+			int timeLength = (Integer) c[1];
+			for (int overscan : new int[] { 0, WIDTH / 4 }) {
+				long bytes = measure(timeUnit, timeLength, overscan);
+				String result = timeUnit + " timeLength=" + timeLength
+						+ " overscan=" + overscan + ": " + bytes + " bytes in "
+						+ FRAMES + " frames";
+				System.out.println(result);
+				if (bytes > 0) {
+					failures.append('\n').append(result);
+				}
+			}
+		}
+		if (failures.length() > 0) {
+			throw new IllegalStateException(
+					"TickLayout.compute allocates while scrolling:" + failures);
+		}
+	}
+
+	/**
+	 * @MethodName: measure
+	 * @Function: 预热后统计连续滚动FRAMES帧分配的字节数
+	 * @return 分配的总字节数，已扣除统计本身的开销
+	 */
+	public long measure(TimeUnit timeUnit, int timeLength, int overscan) {
+		TickLayout layout = new TickLayout();
+		long step = timeLength * TickLayout.MINUTE_MS / WIDTH * SCROLL_PX;
+		long middleTime = scroll(layout, START_TIME, step, timeUnit,
+				timeLength, overscan, WARMUP_FRAMES);
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long overhead = -allocated() + allocated();
+			long before = allocated();
+			middleTime = scroll(layout, middleTime, step, timeUnit,
+					timeLength, overscan, FRAMES);
+			long after = allocated();
+			best = Math.min(best, after - before - overhead);
+		}
+		return Math.max(best, 0);
+	}
+
+	private static long scroll(TickLayout layout, long middleTime, long step,
+			TimeUnit timeUnit, int timeLength, int overscan, int frames) {
+		for (int i = 0; i < frames; i++) {
+			middleTime += step;
+			layout.compute(middleTime, timeLength, timeUnit, WIDTH, overscan);
+		}
+		return middleTime;
+	}
+
+	private long allocated() {
+		try {
+			return (Long) allocatedBytes.invoke(threadBean, threadId);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException(e);
+		}
+	}
+}
@@ -9,23 +9,33 @@
 package com.wulian.icam.view.widget;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.support.v4.util.LruCache;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
@@ -103,32 +113,68 @@ import android.view.WindowManager;
  * @email: jiansheng.yuan@wuliangroup.com
  */
 public class TimeControlView extends View {
-	private static final int FIVE_DAY = 7200;// 5天
-	private static final int ONE_DAY = 1440;// 1天
-	private static final int TEN_HOUR = 600;// 10小时
-	private static final int FIVE_HOUR = 300;// 5小时
-	private static final int TWO_HOUR = 120;// 2小时
-	private static final int ONE_HOUR = 60;// 1小时
-
-	private final static int MINI_LENGTH = 30;// 时间标尺最小高度
-	private final static int MIDDILE_LENGTH = 40;// 时间标尺中等高度
-	private final static int HOUR_LENGTH = 80;// 时间标尺小时高度
-	private final static int DAY_LENGTH = 100;// 时间标尺小时高度
+	static final int FIVE_DAY = 7200;// 5天
+	static final int ONE_DAY = 1440;// 1天
+	static final int TEN_HOUR = 600;// 10小时
+	static final int FIVE_HOUR = 300;// 5小时
+	static final int TWO_HOUR = 120;// 2小时
+	static final int ONE_HOUR = 60;// 1小时
+
+	final static int MINI_LENGTH = 30;// 时间标尺最小高度
+	final static int MIDDILE_LENGTH = 40;// 时间标尺中等高度
+	final static int HOUR_LENGTH = 80;// 时间标尺小时高度
+	final static int DAY_LENGTH = 100;// 时间标尺小时高度
 	private static final int TEXT_SIZE = 13;// 绘制文字大小
 	private static final String TAG = "TimeControlView";
-	private int maxSize = 4 * 1024 * 1024;
-	private LruCache<Long, Integer> cacheMH = new LruCache<Long, Integer>(
-			maxSize) {
-		protected int sizeOf(Long key, Integer value) {
-			return value.byteValue();
-		};
-	};
-
+	/**
+	 * 中间时间、时间长度和时间单位，可以通过{@link #setTimelineModel}与其他View共用
+	 */
+	private TimelineModel model;
+	private boolean attached;
+	/**
+	 * 绘制统计，为null时不统计
+	 */
+	private FrameStats frameStats;
+	/**
+	 * 上一次请求重绘时的中间时间、缩放级别、中间时间的天序号和是否有天刻度，用于计算需要重绘的区域
+	 */
+	private long redrawMiddleTime;
+	private int redrawTimeLength;
+	private TimeUnit redrawTimeUnit;
+	private long redrawDay;
+	private boolean redrawHasDayTick;
+	private Rect clipBounds = new Rect();
+	/**
+	 * 跟随播放：following为true时每帧根据播放速度推进中间时间
+	 */
+	private boolean following;
+	/** 开始跟随时的播放时间 */
+	private long followAnchorTime;
+	/** 开始跟随的帧时间，0表示等待第一帧 */
+	private long followAnchorNanos;
+	/** 播放速度，1为正常速度 */
+	private float followRate = 1f;
+	/**
+	 * 跟随播放时缓存至少平移这么多像素才重绘。缓存按亚像素带滤波平移，低于1/4像素的变化看不出来，
+	 * 10小时视图下正常速度每秒只移动约0.03像素
+	 */
+	private static final float FOLLOW_REDRAW_PX = 0.25f;
+	/**
+	 * 跟随播放时滚动内容的缓存，左右各多画1/4屏，每帧只平移绘制缓存，移出缓存范围时才重新绘制
+	 */
+	private Bitmap followBitmap;
+	private Canvas followCanvas;
+	private TickLayout followLayout = new TickLayout();
+	private Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private long followCacheMiddleTime;
+	private int followCacheTimeLength;
+	private TimeUnit followCacheTimeUnit;
+	private RecordPeriods followCachePeriods;
 	// 清空缓存
 	public void clear() {
-		if (cacheMH != null) {
-			cacheMH.evictAll();
-		}
+		painter.clear();
+		model.reset();
+		followCacheTimeUnit = null;
 	}
 
 	/**
@@ -136,25 +182,21 @@ public class TimeControlView extends View {
 	 */
 	private Paint bluePaint, commonPaint;
 	private TextPaint textPaint;
+	/**
+	 * 绘制滚动内容
+	 */
+	private RulerPainter painter;
 	/**
 	 * 密度缩放比例 与160dpi的比例
 	 */
 	private float mDensity;
 	/**
-	 * 屏幕宽度
+	 * View的宽度，onSizeChanged之前为屏幕宽度。刻度布局、跟随缓存和缩放帧都按这个宽度计算
 	 */
-	private int screenWidth;
+	private int viewWidth;
 
 	/**
-	 * 时间长度（一屏幕显示的总时间），通过手势缩放来改变改值
-	 */
-	private int timeLength;
-	/**
-	 * 时间单位，有三种，具体查看{@link TimeUnit}（最小刻度之间代表的时间）
-	 */
-	private TimeUnit timeUnit;
-	/**
-	 * 最小刻度之间的距离，distance = screenWidth/(timeLength/timeUnit.getTimeUnit())
+	 * 最小刻度之间的距离，distance = viewWidth/(timeLength/timeUnit.getTimeUnit())
 	 */
 	private float distance;
 	/**
@@ -180,12 +222,33 @@ public class TimeControlView extends View {
 
 	private int margin_top;// 距离顶端的距离
 	private float offset; // 时间偏移量
-	private RectF rectF, timeRectF;
+	private RectF rectF;
 	private Path mPath;
 	/**
 	 * 所有的回放时间段
 	 */
 	private HashMap<String, String> listTimeMap;
+	/**
+	 * 回放时间段解析后的结果，onDraw和后台缩放绘制直接使用。
+	 * setRecordPeriodsTime可能在子线程调用，开始和结束时间放在同一个不可变对象中整体替换
+	 */
+	private volatile RecordPeriods periods = RecordPeriods.EMPTY;
+
+	/**
+	 * @ClassName: RecordPeriods
+	 * @Function: 按开始时间排序的回看时间段，创建后不再修改
+	 */
+	private static final class RecordPeriods {
+		static final RecordPeriods EMPTY = new RecordPeriods(new long[0],
+				new long[0]);
+		final long[] starts;
+		final long[] ends;
+
+		RecordPeriods(long[] starts, long[] ends) {
+			this.starts = starts;
+			this.ends = ends;
+		}
+	}
 
 	/**
 	 * @ClassName: TimeUnit
@@ -249,10 +312,10 @@ public class TimeControlView extends View {
 		textPaint.setAntiAlias(true);
 
 		mPath = new Path();
+		painter = new RulerPainter(commonPaint, bluePaint, textPaint);
 
-		screenWidth = getDeviceSize(context).widthPixels;
-		timeLength = TEN_HOUR;
-		timeUnit = TimeUnit.TWO_MINUTE;
+		viewWidth = getDeviceSize(context).widthPixels;
+		model = new TimelineModel();
 		distance = getDistance();
 
 		setBackgroundColor(Color.rgb(226, 226, 226));
@@ -260,58 +323,47 @@ public class TimeControlView extends View {
 		textWidthMD = getTextWidth("11月03日", textPaint);
 		textHeight = getTextHeight("00:00", textPaint);
 		textHeightMD = getTextHeight("11月03日", textPaint);
-		// 设置初始化时间
-		if (initTime == 0) {
-			// 默认为当前时间一小时前,只要精确到分
-			initTime = System.currentTimeMillis() / 60 / 1000 * 60 * 1000 - 60
-					* 60 * 1000;
-		}
-		middleTime = initTime;
+		// 设置初始化时间，默认为当前时间一小时前,只要精确到分
+		initTime = model.getMiddleTime();
 		rectF = new RectF();
-		timeRectF = new RectF();
 		// testListTimeMap();
 	}
 
 	private void init() {
+		mPath.reset();
 		contentheight = height - 12;
 		margin_top = contentheight * 4 / 15;
-		rectF.set(screenWidth * 2 / 5, (margin_top - textHeightMD) / 2 - 10,
-				screenWidth * 3 / 5, (margin_top + textHeightMD) / 2 + 10);
-		mPath.lineTo(screenWidth / 2, margin_top);
-		mPath.lineTo(screenWidth / 2 - 6, margin_top - 12);
-		mPath.lineTo(screenWidth / 2 + 6, margin_top - 12);
-		mPath.lineTo(screenWidth / 2, margin_top);
+		rectF.set(viewWidth * 2 / 5, (margin_top - textHeightMD) / 2 - 10,
+				viewWidth * 3 / 5, (margin_top + textHeightMD) / 2 + 10);
+		mPath.lineTo(viewWidth / 2, margin_top);
+		mPath.lineTo(viewWidth / 2 - 6, margin_top - 12);
+		mPath.lineTo(viewWidth / 2 + 6, margin_top - 12);
+		mPath.lineTo(viewWidth / 2, margin_top);
 		mPath.close();
-		mPath.lineTo(screenWidth / 2, contentheight);
-		mPath.lineTo(screenWidth / 2 - 6, contentheight + 12);
-		mPath.lineTo(screenWidth / 2 + 6, contentheight + 12);
-		mPath.lineTo(screenWidth / 2, contentheight);
+		mPath.lineTo(viewWidth / 2, contentheight);
+		mPath.lineTo(viewWidth / 2 - 6, contentheight + 12);
+		mPath.lineTo(viewWidth / 2 + 6, contentheight + 12);
+		mPath.lineTo(viewWidth / 2, contentheight);
 		mPath.close();
+		painter.setGeometry(viewWidth, margin_top, contentheight);
 	}
 
+	private Rect textBounds = new Rect();
+
 	// 得到text的高度
 	private int getTextHeight(String text, Paint paint) {
-		Rect bounds = new Rect();
-		paint.getTextBounds(text, 0, text.length(), bounds);
-		int height = bounds.bottom + bounds.height();
+		paint.getTextBounds(text, 0, text.length(), textBounds);
+		int height = textBounds.bottom + textBounds.height();
 		return height;
 	}
 
 	// 得到text的宽度
 	private int getTextWidth(String text, Paint paint) {
-		Rect bounds = new Rect();
-		paint.getTextBounds(text, 0, text.length(), bounds);
-		int width = bounds.left + bounds.width();
+		paint.getTextBounds(text, 0, text.length(), textBounds);
+		int width = textBounds.left + textBounds.width();
 		return width;
 	}
 
-	// 将9--->09，25-->01
-	private String timePattern(int i) {
-		/*
-		 * if (i > 23) { i = i % 24; } if (i < 0) { i = i % 24 + 24; }
-		 */
-		return (i + "").length() > 1 ? i + "" : "0" + i;
-	}
 
 	/**
 	 * @MethodName: getDistance
@@ -322,68 +374,8 @@ public class TimeControlView extends View {
 	 * @return
 	 */
 	private float getDistance() {
-		return screenWidth * 1.0f / (timeLength / timeUnit.getTimeUnit());
-	}
-
-	/**
-	 * @MethodName: getLenght
-	 * @Function: 根据不同的时间单位和偏移量来计算当前画线的长度
-	 * @author: yuanjs
-	 * @date: 2015年11月17日
-	 * @email: jiansheng.yuan@wuliangroup.com
-	 * @param i
-	 *            传过来的第几个绘图点
-	 * @return 该绘图点处的绘图长度
-	 */
-	private Integer timeH, timeM;
-
-	private int getLineLenght(long time) {
-		timeM = cacheMH.get(time);
-		if (timeM == null) {
-			timeM = getTimeShortM(time);
-			cacheMH.put(time, timeM);
-		}
-		timeH = cacheMH.get(time / 1000 / 60 / 60);
-		if (timeH == null) {
-			timeH = getTimeShortH(time);
-			cacheMH.put(time / 1000 / 60 / 60, timeH);
-		}
-		switch (timeUnit) {
-		case TWENTY_FOUR_MINUTE:
-			if (timeH % 2 == 0) {
-				if (timeH == 0 && timeM == 0) {
-					return DAY_LENGTH;
-				} else if (timeH % 12 == 0 && timeM == 0) {
-					return HOUR_LENGTH;
-				} else if (timeH % 2 == 0 && timeM == 0) {
-					return MIDDILE_LENGTH;
-				} else if (timeM % 24 == 0) {
-					return MINI_LENGTH;
-				}
-			}
-
-		case TWO_MINUTE:
-			if (timeH == 0 && timeM == 0) {
-				return DAY_LENGTH;
-			} else if (timeM == 0) {
-				return HOUR_LENGTH;
-			} else if (timeM % 10 == 0) {
-				return MIDDILE_LENGTH;
-			} else if (timeM % 2 == 0) {
-				return MINI_LENGTH;
-			}
-		case ONE_MINUTE:
-			if (timeH == 0 && timeM == 0) {
-				return DAY_LENGTH;
-			} else if (timeM % 30 == 0) {
-				return HOUR_LENGTH;
-			} else if (timeM % 5 == 0) {
-				return MIDDILE_LENGTH;
-			} else {
-				return MINI_LENGTH;
-			}
-		}
-		return DAY_LENGTH;
+		return viewWidth * 1.0f
+				/ (model.getTimeLength() / model.getTimeUnit().getTimeUnit());
 	}
 
 	@Override
@@ -398,236 +390,620 @@ public class TimeControlView extends View {
 	}
 
 	@Override
-	protected void onDraw(Canvas canvas) {
-		commonPaint.setColor(Color.argb(255, 100, 100, 100));
-		commonPaint.setStrokeWidth(1f);
-		float drawDistance = 0f;
-		timeM = cacheMH.get(middleTime);
-		if (timeM == null) {
-			timeM = getTimeShortM(middleTime);
-			cacheMH.put(middleTime, timeM);
-		}
-		timeH = cacheMH.get(middleTime / 1000 / 60 / 60);
-		if (timeH == null) {
-			timeH = getTimeShortH(middleTime);
-			cacheMH.put(middleTime / 1000 / 60 / 60, timeH);
-		}
-		int offsetTime = timeM % (timeUnit.getTimeUnit());
-		if (timeUnit == TimeUnit.TWENTY_FOUR_MINUTE) {
-			if (timeH % 2 != 0) {
-				// 奇
-				offsetTime = (timeM / (timeUnit.getTimeUnit() / 2)) % 2 == 0 ? timeUnit
-						.getTimeUnit()
-						/ 2
-						+ timeM
-						% (timeUnit.getTimeUnit() / 2) : timeM
-						% (timeUnit.getTimeUnit() / 2);
-			} else {
-				// 偶
-				offsetTime = timeM % (timeUnit.getTimeUnit());
-			}
-		}
-		drawDistance = screenWidth / 2 - offsetTime * 1.0f
-				/ timeUnit.getTimeUnit() * distance;
-		float leftDrawDistance = drawDistance;
-		long time = 0;
-		for (int i = 0; leftDrawDistance >= 0; i++) {
-			time = middleTime - offsetTime * 60 * 1000 - timeUnit.getTimeUnit()
-					* 60 * 1000 * i;
-			timeM = cacheMH.get(time);
-			if (timeM == null) {
-				timeM = getTimeShortM(time);
-				cacheMH.put(time, timeM);
-			}
-			timeH = cacheMH.get(time / 1000 / 60 / 60);
-			if (timeH == null) {
-				timeH = getTimeShortH(time);
-				cacheMH.put(time / 1000 / 60 / 60, timeH);
-			}
-			int lineLength = getLineLenght(time);
-			// 绘线
-			if (lineLength == DAY_LENGTH) {
-				commonPaint.setColor(Color.RED);
-				canvas.drawLine(leftDrawDistance, margin_top, leftDrawDistance,
-						margin_top + DAY_LENGTH, commonPaint);
-				canvas.drawLine(leftDrawDistance, contentheight,
-						leftDrawDistance, contentheight - DAY_LENGTH,
-						commonPaint);
-				commonPaint.setColor(Color.argb(255, 90, 90, 90));
-				// 绘制"09月17日"
-				canvas.drawText(getTimeMD(time), leftDrawDistance - textWidthMD
-						/ 2, (margin_top - textHeightMD) / 2 + textHeightMD,
-						textPaint);
-			} else {
-				canvas.drawLine(leftDrawDistance, margin_top, leftDrawDistance,
-						margin_top + lineLength, commonPaint);
-				canvas.drawLine(leftDrawDistance, contentheight,
-						leftDrawDistance, contentheight - lineLength,
-						commonPaint);
-			}
-			textPaint.setColor(Color.argb(255, 150, 150, 150));
-			switch (timeUnit) {
-			case TWENTY_FOUR_MINUTE:
-				if (lineLength == DAY_LENGTH || lineLength == HOUR_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							leftDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				}
-				break;
-			case TWO_MINUTE:
-				if (lineLength == HOUR_LENGTH || lineLength == DAY_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							leftDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				}
-				break;
-			case ONE_MINUTE:
-				if (lineLength == DAY_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							leftDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				} else if (lineLength == HOUR_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":"
-							+ timePattern(timeM), leftDrawDistance, margin_top
-							+ MIDDILE_LENGTH + 3 + textHeight, textPaint);
-				}
-				break;
-			}
-			leftDrawDistance -= distance;
-		}
-		float rightDrawDistance = drawDistance;
-		// 绘制右边
-		for (int i = 0; rightDrawDistance <= screenWidth; i++) {
-			time = middleTime - offsetTime * 60 * 1000 + timeUnit.getTimeUnit()
-					* 60 * 1000 * i;
-			timeM = cacheMH.get(time);
-			if (timeM == null) {
-				timeM = getTimeShortM(time);
-				cacheMH.put(time, timeM);
-			}
-			timeH = cacheMH.get(time / 1000 / 60 / 60);
-			if (timeH == null) {
-				timeH = getTimeShortH(time);
-				cacheMH.put(time / 1000 / 60 / 60, timeH);
-			}
-			int lineLength = getLineLenght(time);
-			if (lineLength == DAY_LENGTH) {
-				commonPaint.setColor(Color.RED);
-				canvas.drawLine(rightDrawDistance, margin_top,
-						rightDrawDistance, margin_top + DAY_LENGTH, commonPaint);
-				canvas.drawLine(rightDrawDistance, contentheight,
-						rightDrawDistance, contentheight - DAY_LENGTH,
-						commonPaint);
-				commonPaint.setColor(Color.argb(255, 90, 90, 90));
-				canvas.drawText(getTimeMD(time), rightDrawDistance
-						- textWidthMD / 2, (margin_top - textHeightMD) / 2
-						+ textHeightMD, textPaint);
-			} else {
-				canvas.drawLine(rightDrawDistance, margin_top,
-						rightDrawDistance, margin_top + lineLength, commonPaint);
-				canvas.drawLine(rightDrawDistance, contentheight,
-						rightDrawDistance, contentheight - lineLength,
-						commonPaint);
-			}
-			switch (timeUnit) {
-			case TWENTY_FOUR_MINUTE:
-				if (lineLength == DAY_LENGTH || lineLength == HOUR_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							rightDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				}
-				break;
-			case TWO_MINUTE:
-				if (lineLength == HOUR_LENGTH || lineLength == DAY_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							rightDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				}
-				break;
-			case ONE_MINUTE:
-				if (lineLength == DAY_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":00",
-							rightDrawDistance, margin_top + MIDDILE_LENGTH + 3
-									+ textHeight, textPaint);
-				} else if (lineLength == HOUR_LENGTH) {
-					canvas.drawText(timePattern(timeH) + ":"
-							+ timePattern(timeM), rightDrawDistance, margin_top
-							+ MIDDILE_LENGTH + 3 + textHeight, textPaint);
-				}
-				break;
-			}
-			rightDrawDistance += distance;
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		if (w <= 0 || w == viewWidth) {
+			return;
 		}
-		if (listTimeMap != null) {
-			Long timeLeft = middleTime - timeLength * 60 * 1000 / 2;
-			Long timeRight = middleTime + timeLength * 60 * 1000 / 2;
-			Long drawLeft, drawRight;
-			Iterator<String> startTimeIterator = listTimeMap.keySet()
-					.iterator();
-			// TODO 绘画回看时间段区域
-			while (startTimeIterator.hasNext()) {
-				String timeStartStr = startTimeIterator.next();
-				Long timeStart = Long.parseLong(timeStartStr);
-				Long timeEnd = Long.parseLong(listTimeMap.get(timeStartStr));
-				if (timeStart > timeLeft) {
-					drawLeft = timeStart;
-				} else {
-					drawLeft = timeLeft;
-				}
-				if (timeEnd < timeRight) {
-					drawRight = timeEnd;
-				} else {
-					drawRight = timeRight;
-				}
-				timeRectF.set((drawLeft - timeLeft) * 1.0f
-						/ (timeLength * 60 * 1000) * screenWidth, margin_top,
-						screenWidth - (timeRight - drawRight) * 1.0f
-								/ (timeLength * 60 * 1000) * screenWidth,
-						contentheight);
-				canvas.drawRect(timeRectF, bluePaint);
-			}
+		// View不一定占满屏幕，按实际宽度重新布局
+		viewWidth = w;
+		distance = getDistance();
+		init();
+		redrawTimeUnit = null;
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		long drawStart = frameStats != null ? System.nanoTime() : 0;
+		long middleTime = model.getMiddleTime();
+		int timeLength = model.getTimeLength();
+		int ticks;
+		if (zooming) {
+			ticks = drawZoomPreview(canvas, middleTime, timeLength);
+		} else if (following) {
+			ticks = drawFollowCache(canvas, middleTime, timeLength);
+		} else {
+			TickLayout layout = model.getTickLayout(viewWidth);
+			// 只绘制需要重绘的区域内的刻度，文字最多超出刻度textWidthMD
+			canvas.getClipBounds(clipBounds);
+			painter.draw(canvas, layout, middleTime, timeLength, 0,
+					clipBounds.left, clipBounds.right);
+			ticks = layout.count;
 		}
 		// 绘制外围上下两条线
 		commonPaint.setColor(Color.argb(255, 80, 80, 80));
 		commonPaint.setStrokeWidth(2f);
-		canvas.drawLine(0, margin_top, screenWidth, margin_top, commonPaint);
-		canvas.drawLine(0, contentheight - 1, screenWidth, contentheight - 1,
+		canvas.drawLine(0, margin_top, viewWidth, margin_top, commonPaint);
+		canvas.drawLine(0, contentheight - 1, viewWidth, contentheight - 1,
 				commonPaint);
 
 		commonPaint.setColor(Color.argb(255, 9, 166, 228));
 		canvas.drawOval(rectF, commonPaint);
 
-		canvas.drawLine(screenWidth / 2, margin_top, screenWidth / 2,
+		canvas.drawLine(viewWidth / 2, margin_top, viewWidth / 2,
 				contentheight, commonPaint);
 		// 中间线上下两菱形箭头,初始化放到onMeasure下
 		canvas.drawPath(mPath, commonPaint);
 		// 显示中间时间的月和日
 		textPaint.setColor(Color.WHITE);
-		canvas.drawText(getTimeMD(middleTime), (screenWidth - textWidthMD) / 2,
+		canvas.drawText(painter.getTimeMD(middleTime),
+				(viewWidth - textWidthMD) / 2,
 				(margin_top - textHeightMD) / 2 + textHeightMD, textPaint);
+		if (frameStats != null) {
+			frameStats.onFrame(System.nanoTime() - drawStart, ticks);
+		}
 		super.onDraw(canvas);
 	}
 
+	/**
+	 * @MethodName: drawFollowCache
+	 * @Function: 跟随播放时平移绘制缓存的滚动内容，支持亚像素平移，超出缓存范围或缩放、回看时间段变化时重新绘制缓存
+	 * @return 本帧绘制的刻度数
+	 */
+	private int drawFollowCache(Canvas canvas, long middleTime, int timeLength) {
+		if (viewWidth <= 0 || height <= 0) {
+			return 0;
+		}
+		int overscan = viewWidth / 4;
+		TimeUnit timeUnit = model.getTimeUnit();
+		int ticks = 0;
+		float shift = (middleTime - followCacheMiddleTime)
+				* followLayout.pxPerMs;
+		if (followBitmap == null
+				|| followBitmap.getWidth() != viewWidth + 2 * overscan
+				|| followBitmap.getHeight() != height
+				|| followCacheTimeUnit != timeUnit
+				|| followCacheTimeLength != timeLength
+				|| followCachePeriods != periods
+				|| Math.abs(shift) > overscan) {
+			renderFollowCache(middleTime, timeLength, timeUnit, overscan);
+			ticks = followLayout.count;
+			shift = 0;
+		}
+		canvas.drawBitmap(followBitmap, -overscan - shift, 0, bitmapPaint);
+		return ticks;
+	}
+
+	// 以middleTime为中心重新绘制跟随播放的缓存
+	private void renderFollowCache(long middleTime, int timeLength,
+			TimeUnit timeUnit, int overscan) {
+		int width = viewWidth + 2 * overscan;
+		if (followBitmap == null || followBitmap.getWidth() != width
+				|| followBitmap.getHeight() != height) {
+			if (followBitmap != null) {
+				followBitmap.recycle();
+			}
+			followBitmap = Bitmap.createBitmap(width, height,
+					Bitmap.Config.ARGB_8888);
+			followCanvas = new Canvas(followBitmap);
+		} else {
+			followBitmap.eraseColor(Color.TRANSPARENT);
+		}
+		followLayout.compute(middleTime, timeLength, timeUnit, viewWidth,
+				overscan);
+		followCanvas.save();
+		followCanvas.translate(overscan, 0);
+		painter.draw(followCanvas, followLayout, middleTime, timeLength,
+				overscan, -overscan, viewWidth + overscan);
+		followCanvas.restore();
+		followCacheMiddleTime = middleTime;
+		followCacheTimeLength = timeLength;
+		followCacheTimeUnit = timeUnit;
+		followCachePeriods = periods;
+	}
+
+	// 释放跟随缓存，recycle为false时只释放引用，由GC回收
+	private void releaseFollowCache(boolean recycle) {
+		if (followBitmap != null) {
+			if (recycle) {
+				followBitmap.recycle();
+			}
+			followBitmap = null;
+			followCanvas = null;
+		}
+		followCacheTimeUnit = null;
+	}
+
+	private final Choreographer.FrameCallback followCallback = new Choreographer.FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			if (!following) {
+				return;
+			}
+			if (followAnchorNanos == 0) {
+				followAnchorNanos = frameTimeNanos;
+			}
+			double elapsed = (frameTimeNanos - followAnchorNanos) / 1e6;
+			model.setMiddleTime(followAnchorTime
+					+ (long) (elapsed * followRate));
+			// 已经在当前帧的回调中，直接刷新，不再等下一帧
+			model.flushInvalidate();
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	};
+
+	/**
+	 * @MethodName: startFollow
+	 * @Function: 开始跟随播放，每帧按播放速度推进中间时间，用户触摸卡尺时自动停止，需在主线程调用
+	 * @param anchorTime
+	 *            当前播放到的时间，毫秒
+	 * @param rate
+	 *            播放速度，1为正常速度
+	 */
+	public void startFollow(long anchorTime, float rate) {
+		following = true;
+		followAnchorTime = anchorTime;
+		followAnchorNanos = 0;
+		followRate = rate;
+		model.setMiddleTime(anchorTime);
+		Choreographer.getInstance().removeFrameCallback(followCallback);
+		if (attached) {
+			Choreographer.getInstance().postFrameCallback(followCallback);
+		}
+	}
+
+	/** 从当前中间时间以上一次的播放速度恢复跟随播放，需在主线程调用 */
+	public void resumeFollow() {
+		startFollow(model.getMiddleTime(), followRate);
+	}
+
+	/** 停止跟随播放，同时释放跟随缓存 */
+	public void stopFollow() {
+		if (!following) {
+			return;
+		}
+		following = false;
+		Choreographer.getInstance().removeFrameCallback(followCallback);
+		// 停止后直接绘制，不再需要缓存。缓存可能还在最后一帧的绘制中，不recycle，只释放引用
+		releaseFollowCache(false);
+		invalidateRegion(0, 0, viewWidth, height, false);
+	}
+
+	/** 是否正在跟随播放 */
+	public boolean isFollowing() {
+		return following;
+	}
+
+	/**
+	 * 拖动时预测停止位置
+	 */
+	private SeekPredictor seekPredictor = new SeekPredictor();
+	public SeekHintListener mSeekHintListener;
+	private static final int NO_HINT = -2;
+	/** 上一次回调的时间段下标和停止时间 */
+	private int hintSegment = NO_HINT;
+	private long hintTime;
+
+	/**
+	 * 缩放预览：双指缩放时先缩放显示上一帧的滚动内容，后台线程绘制新缩放级别的准确结果后淡入。
+	 * 缩放保持中间时间不变，所以预览以中间线为缩放中心
+	 */
+	private static final long ZOOM_FADE_MS = 150;
+	/** 缩放过程中最多同时存在的缩放帧：正在显示、正在淡入、后台正在绘制。预览结束后只保留一帧 */
+	private static final int MAX_ZOOM_FRAMES = 3;
+	/** 正在显示缩放预览 */
+	private boolean zooming;
+	/** 双指还在屏幕上 */
+	private boolean pinching;
+	/** 后台线程正在绘制，期间的缩放只记录为pendingZoomRender */
+	private boolean zoomRendering, pendingZoomRender;
+	private ZoomFrame zoomBase, zoomFade;
+	private long zoomFadeStart;
+	private int zoomFrameCount;
+	private ArrayList<ZoomFrame> spareZoomFrames = new ArrayList<ZoomFrame>();
+	/**
+	 * 所有实例共用的缩放绘制线程，按正在缩放预览的View计数，最后一个预览结束或离开窗口时退出。只在主线程访问
+	 */
+	private static HandlerThread zoomThread;
+	private static Handler zoomHandler;
+	private static int zoomThreadUsers;
+	/** 本View是否已计入zoomThreadUsers */
+	private boolean usingZoomThread;
+	private Handler mainHandler = new Handler(Looper.getMainLooper());
+	/** 后台线程专用的画笔和布局 */
+	private RulerPainter zoomPainter;
+	private TickLayout zoomLayout = new TickLayout();
+	/** 主线程绘制缩放起点帧用的布局，不能借用followLayout，否则跟随缓存的布局会被改掉 */
+	private TickLayout zoomStartLayout = new TickLayout();
+	/** 当前的后台绘制任务，离开窗口后完成的旧任务会被丢弃 */
+	private ZoomRenderJob zoomRenderJob;
+
+	/**
+	 * @ClassName: ZoomFrame
+	 * @Function: 某个缩放级别下绘制好的滚动内容，左右各多画1/4屏
+	 */
+	private static class ZoomFrame {
+		Bitmap bitmap;
+		long middleTime;
+		int timeLength;
+		TimeUnit timeUnit;
+		/** 绘制时的View宽度和overscan，View尺寸在缩放过程中改变时按这两个值换算 */
+		int width, overscan;
+	}
+
+	// 双指按下，先用当前数据绘制一帧作为缩放的起点
+	private void startZoom() {
+		if (zooming) {
+			// 上一次缩放的预览还没结束，接着使用
+			pinching = true;
+			return;
+		}
+		if (viewWidth <= 0 || height <= 0) {
+			return;
+		}
+		ZoomFrame frame = obtainZoomFrame();
+		if (frame == null) {
+			return;
+		}
+		renderZoomFrame(frame, painter, zoomStartLayout,
+				model.getMiddleTime(), model.getTimeLength(),
+				model.getTimeUnit(), viewWidth, viewWidth / 4);
+		zoomBase = frame;
+		zooming = true;
+		pinching = true;
+	}
+
+	// 双指抬起，确保最后的缩放级别有准确的绘制结果
+	private void endZoom() {
+		if (!pinching) {
+			return;
+		}
+		pinching = false;
+		requestZoomRender();
+		invalidateRegion(0, 0, viewWidth, height, false);
+	}
+
+	// 请求后台绘制当前缩放级别，后台正在绘制时合并到下一次
+	private void requestZoomRender() {
+		if (!zooming) {
+			return;
+		}
+		if (zoomRendering) {
+			pendingZoomRender = true;
+			return;
+		}
+		long middleTime = model.getMiddleTime();
+		int timeLength = model.getTimeLength();
+		TimeUnit timeUnit = model.getTimeUnit();
+		ZoomFrame latest = zoomFade != null ? zoomFade : zoomBase;
+		if (isZoomFrameCurrent(latest, middleTime, timeLength, timeUnit,
+				viewWidth)) {
+			return;
+		}
+		ZoomFrame frame = obtainZoomFrame();
+		if (frame == null) {
+			pendingZoomRender = true;
+			return;
+		}
+		if (!usingZoomThread) {
+			acquireZoomThread();
+			usingZoomThread = true;
+		}
+		if (zoomPainter == null) {
+			zoomPainter = new RulerPainter(new Paint(commonPaint), new Paint(
+					bluePaint), new TextPaint(textPaint));
+		}
+		zoomRenderJob = new ZoomRenderJob(frame, middleTime, timeLength,
+				timeUnit);
+		zoomRendering = true;
+		zoomHandler.post(zoomRenderJob);
+	}
+
+	private static void acquireZoomThread() {
+		if (zoomThreadUsers++ == 0) {
+			zoomThread = new HandlerThread(TAG);
+			zoomThread.start();
+			zoomHandler = new Handler(zoomThread.getLooper());
+		}
+	}
+
+	private static void releaseZoomThread() {
+		if (--zoomThreadUsers == 0) {
+			zoomThread.quit();
+			zoomThread = null;
+			zoomHandler = null;
+		}
+	}
+
+	/**
+	 * @ClassName: ZoomRenderJob
+	 * @Function: 后台线程绘制一个缩放帧，完成后回到主线程淡入。
+	 *            View的尺寸在创建时复制，后台线程不读主线程会修改的字段
+	 */
+	private class ZoomRenderJob implements Runnable {
+		private final ZoomFrame frame;
+		private final long middleTime;
+		private final int timeLength;
+		private final TimeUnit timeUnit;
+		private final int width, overscan, marginTop, contentHeight;
+		private final RulerPainter painter;
+		private final TickLayout layout;
+
+		ZoomRenderJob(ZoomFrame frame, long middleTime, int timeLength,
+				TimeUnit timeUnit) {
+			this.frame = frame;
+			this.middleTime = middleTime;
+			this.timeLength = timeLength;
+			this.timeUnit = timeUnit;
+			this.width = viewWidth;
+			this.overscan = viewWidth / 4;
+			this.marginTop = margin_top;
+			this.contentHeight = contentheight;
+			this.painter = zoomPainter;
+			this.layout = zoomLayout;
+		}
+
+		@Override
+		public void run() {
+			painter.setGeometry(width, marginTop, contentHeight);
+			renderZoomFrame(frame, painter, layout, middleTime, timeLength,
+					timeUnit, width, overscan);
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					onZoomRendered(ZoomRenderJob.this);
+				}
+			});
+		}
+	}
+
+	/**
+	 * 等待后台线程执行完已提交的缩放绘制，绘制结果仍由主线程消息投递，供{@link GestureTraceReplayer}同步回放时使用
+	 */
+	void awaitZoomRender() throws InterruptedException {
+		Handler handler = zoomHandler;
+		if (handler == null) {
+			return;
+		}
+		final CountDownLatch latch = new CountDownLatch(1);
+		if (handler.post(new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		})) {
+			latch.await();
+		}
+	}
+
+	// 主线程：后台绘制完成，开始淡入
+	private void onZoomRendered(ZoomRenderJob job) {
+		if (job != zoomRenderJob) {
+			// 离开窗口前提交的任务
+			job.frame.bitmap.recycle();
+			return;
+		}
+		zoomRenderJob = null;
+		zoomRendering = false;
+		if (!zooming) {
+			recycleZoomFrame(job.frame);
+			endZoomPreview();
+			return;
+		}
+		if (zoomFade != null) {
+			// 上一次淡入还没结束，直接完成
+			recycleZoomFrame(zoomBase);
+			zoomBase = zoomFade;
+		}
+		zoomFade = job.frame;
+		zoomFadeStart = SystemClock.uptimeMillis();
+		if (pendingZoomRender) {
+			pendingZoomRender = false;
+			requestZoomRender();
+		}
+		invalidateRegion(0, 0, viewWidth, height, false);
+	}
+
+	/**
+	 * @MethodName: drawZoomPreview
+	 * @Function: 把已有的缩放帧缩放到当前缩放级别绘制，新绘制好的帧在ZOOM_FADE_MS内淡入。
+	 *            双指抬起、没有正在淡入或后台绘制的帧时结束预览，之后恢复直接绘制
+	 * @return 本帧绘制的刻度数，只绘制Bitmap时为0
+	 */
+	private int drawZoomPreview(Canvas canvas, long middleTime, int timeLength) {
+		float fade = 0;
+		if (zoomFade != null) {
+			fade = (SystemClock.uptimeMillis() - zoomFadeStart) * 1f
+					/ ZOOM_FADE_MS;
+			if (fade >= 1) {
+				recycleZoomFrame(zoomBase);
+				zoomBase = zoomFade;
+				zoomFade = null;
+				fade = 0;
+			}
+		}
+		drawZoomFrame(canvas, zoomBase, middleTime, timeLength,
+				(int) (255 * (1 - fade)));
+		if (zoomFade != null) {
+			drawZoomFrame(canvas, zoomFade, middleTime, timeLength,
+					(int) (255 * fade));
+			// 继续淡入
+			invalidateRegion(0, 0, viewWidth, height, false);
+		} else if (!pinching && !zoomRendering) {
+			// 直接绘制本来就是准确的，不要求zoomBase与当前数据一致，
+			// 否则双指抬起后单指拖动会一直停留在预览中。
+			// 本帧还在使用zoomBase，只放回空闲列表不recycle，留给下一次缩放
+			zooming = false;
+			if (!isZoomFrameCurrent(zoomBase, middleTime, timeLength,
+					model.getTimeUnit(), viewWidth)) {
+				invalidateRegion(0, 0, viewWidth, height, false);
+			}
+			recycleZoomFrame(zoomBase);
+			zoomBase = null;
+			endZoomPreview();
+		}
+		return 0;
+	}
+
+	// 以中间线为中心把frame缩放到当前缩放级别和宽度绘制
+	private void drawZoomFrame(Canvas canvas, ZoomFrame frame,
+			long middleTime, int timeLength, int alpha) {
+		float periodScale = getPeriodScale(timeLength);
+		canvas.save();
+		canvas.translate(viewWidth / 2f + (frame.middleTime - middleTime)
+				* periodScale, 0);
+		canvas.scale(periodScale
+				/ getPeriodScale(frame.width, frame.timeLength), 1f);
+		bitmapPaint.setAlpha(alpha);
+		canvas.drawBitmap(frame.bitmap, -frame.width / 2f - frame.overscan, 0,
+				bitmapPaint);
+		bitmapPaint.setAlpha(255);
+		canvas.restore();
+	}
+
+	private static boolean isZoomFrameCurrent(ZoomFrame frame,
+			long middleTime, int timeLength, TimeUnit timeUnit, int width) {
+		return frame != null && frame.middleTime == middleTime
+				&& frame.timeLength == timeLength && frame.timeUnit == timeUnit
+				&& frame.width == width;
+	}
+
+	// 在frame中绘制指定缩放级别的滚动内容，主线程和后台线程各自传入自己的painter和layout，
+	// painter的尺寸由调用方设置，这里只使用参数，不读View的字段
+	private static void renderZoomFrame(ZoomFrame frame, RulerPainter painter,
+			TickLayout layout, long middleTime, int timeLength,
+			TimeUnit timeUnit, int width, int overscan) {
+		frame.bitmap.eraseColor(Color.TRANSPARENT);
+		Canvas canvas = new Canvas(frame.bitmap);
+		layout.compute(middleTime, timeLength, timeUnit, width, overscan);
+		canvas.translate(overscan, 0);
+		painter.draw(canvas, layout, middleTime, timeLength, overscan,
+				-overscan, width + overscan);
+		frame.middleTime = middleTime;
+		frame.timeLength = timeLength;
+		frame.timeUnit = timeUnit;
+		frame.width = width;
+		frame.overscan = overscan;
+	}
+
+	// 得到一个空闲的缩放帧，都在使用中时返回null
+	private ZoomFrame obtainZoomFrame() {
+		int width = viewWidth + 2 * (viewWidth / 4);
+		ZoomFrame frame = null;
+		if (!spareZoomFrames.isEmpty()) {
+			frame = spareZoomFrames.remove(spareZoomFrames.size() - 1);
+		} else if (zoomFrameCount < MAX_ZOOM_FRAMES) {
+			frame = new ZoomFrame();
+			zoomFrameCount++;
+		} else {
+			return null;
+		}
+		if (frame.bitmap == null || frame.bitmap.getWidth() != width
+				|| frame.bitmap.getHeight() != height) {
+			if (frame.bitmap != null) {
+				frame.bitmap.recycle();
+			}
+			frame.bitmap = Bitmap.createBitmap(width, height,
+					Bitmap.Config.ARGB_8888);
+		}
+		return frame;
+	}
+
+	private void recycleZoomFrame(ZoomFrame frame) {
+		if (frame == null) {
+			return;
+		}
+		if (attached) {
+			spareZoomFrames.add(frame);
+		} else {
+			frame.bitmap.recycle();
+			frame.bitmap = null;
+			zoomFrameCount--;
+		}
+	}
+
+	// 缩放预览结束：只保留最后放回的一帧，其余的可能还在之前的帧中使用，不recycle，只释放引用由GC回收；
+	// 不再使用后台线程
+	private void endZoomPreview() {
+		while (spareZoomFrames.size() > 1) {
+			spareZoomFrames.remove(0);
+			zoomFrameCount--;
+		}
+		if (usingZoomThread) {
+			usingZoomThread = false;
+			releaseZoomThread();
+		}
+	}
+
+	// 离开窗口时释放缩放帧和后台线程，正在后台绘制的帧在绘制完成后由onZoomRendered释放
+	private void releaseZoom() {
+		zooming = false;
+		pinching = false;
+		zoomRendering = false;
+		pendingZoomRender = false;
+		zoomRenderJob = null;
+		recycleZoomFrame(zoomBase);
+		recycleZoomFrame(zoomFade);
+		zoomBase = null;
+		zoomFade = null;
+		for (int i = 0; i < spareZoomFrames.size(); i++) {
+			recycleZoomFrame(spareZoomFrames.get(i));
+		}
+		spareZoomFrames.clear();
+		zoomFrameCount = 0;
+		if (usingZoomThread) {
+			usingZoomThread = false;
+			releaseZoomThread();
+		}
+	}
+
 	private float lastX, curX, moveX;
-	private long middleTime;
 	private float lastScaleX, curScaleX;
 	private boolean isOnePoint = true, isOut;// 手指数和触碰区域
 
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
+		if (event.getActionMasked() == MotionEvent.ACTION_CANCEL) {
+			// 手势被父View拦截时，不论几个手指都要结束缩放
+			if (isOnePoint && !isOut) {
+				// 拖动被取消，卡尺停在当前位置，同样要回调最终停止时间
+				reportSeekHint(true);
+				isOnePoint = false;
+			}
+			endZoom();
+			return true;
+		}
+		if (following) {
+			// 用户拖动卡尺时停止跟随播放
+			stopFollow();
+		}
 		if (event.getPointerCount() == 1) {
 			switch (event.getAction()) {
 			case MotionEvent.ACTION_DOWN:
 				lastX = event.getX();
 				isOut = event.getY() > margin_top ? false : true;
 				isOnePoint = true;
+				// 中间时间可能已被其他View或setMiddleTime修改，从当前值开始滑动
+				initTime = model.getMiddleTime();
+				offset = 0;
+				distance = getDistance();
+				seekPredictor.reset();
+				hintSegment = NO_HINT;
 			case MotionEvent.ACTION_MOVE:
 				curX = event.getX();
 				moveX = lastX - curX;
-				if (isOnePoint && !isOut)
+				if (isOnePoint && !isOut) {
 					changeMoveAndValue();
+					seekPredictor.addSample(event.getEventTime(),
+							model.getMiddleTime());
+					reportSeekHint(false);
+				}
 				break;
 			case MotionEvent.ACTION_UP:
+				if (isOnePoint && !isOut) {
+					reportSeekHint(true);
+				}
+				endZoom();
 				break;
 			default:
 				break;
@@ -639,11 +1015,17 @@ public class TimeControlView extends View {
 			case MotionEvent.ACTION_POINTER_DOWN:
 				lastScaleX = Math.abs(event.getX(0) - event.getX(1));
 				isOut = event.getY() > margin_top ? false : true;
+				if (!isOut) {
+					startZoom();
+				}
 			case MotionEvent.ACTION_MOVE:
 				curScaleX = Math.abs(event.getX(0) - event.getX(1));
 				if (!isOut)
 					changeTimeUnitandDistance();
 				break;
+			case MotionEvent.ACTION_POINTER_UP:
+				endZoom();
+				break;
 			case MotionEvent.ACTION_UP:
 				break;
 			default:
@@ -654,7 +1036,33 @@ public class TimeControlView extends View {
 		return true;
 	}
 
-	private int tempTimeLength;// 减少绘图次数
+	/**
+	 * @MethodName: reportSeekHint
+	 * @Function: 根据拖动速度预测停止位置并吸附到最近的回看时间段，时间段变化或预测位置移动超过一个时间单位时回调
+	 * @param finished
+	 *            手指已抬起，停止位置就是当前中间时间
+	 */
+	private void reportSeekHint(boolean finished) {
+		if (mSeekHintListener == null) {
+			return;
+		}
+		RecordPeriods periods = this.periods;
+		long[] starts = periods.starts, ends = periods.ends;
+		long middleTime = model.getMiddleTime();
+		long landingTime = finished ? middleTime : seekPredictor.predict(
+				middleTime, 1.0 / getPeriodScale(model.getTimeLength()));
+		int segment = SeekPredictor.findSegment(landingTime, starts, ends);
+		landingTime = SeekPredictor.snap(landingTime, segment, starts, ends);
+		long unitTime = model.getTimeUnit().getTimeUnit() * TickLayout.MINUTE_MS;
+		if (!finished && segment == hintSegment
+				&& Math.abs(landingTime - hintTime) < unitTime) {
+			return;
+		}
+		hintSegment = segment;
+		hintTime = landingTime;
+		mSeekHintListener.onSeekHint(landingTime, segment >= 0 ? starts[segment]
+				: -1, segment >= 0 ? ends[segment] : -1);
+	}
 
 	/**
 	 * @MethodName: changeTimeUnitandDistance
@@ -667,6 +1075,9 @@ public class TimeControlView extends View {
 		/**
 		 * 1.要保持中间值不变 2.改变时间长度,从而改变时间单位距离 3.注意临界点，要改变时间单位
 		 */
+		int timeLength = model.getTimeLength();
+		TimeUnit timeUnit = model.getTimeUnit();
+		distance = getDistance();
 		if (Math.abs(curScaleX - lastScaleX) > 2) {
 			timeLength -= (curScaleX - lastScaleX) / distance
 					* timeUnit.getTimeUnit();
@@ -702,17 +1113,15 @@ public class TimeControlView extends View {
 				break;
 			}
 		}
+		model.setScale(timeLength, timeUnit);
+		if (zooming) {
+			requestZoomRender();
+		}
 		distance = getDistance();
-		initTime = middleTime;
+		initTime = model.getMiddleTime();
 		offset = 0;
-		if (tempTimeLength != timeLength) {
-			invalidate();
-			tempTimeLength = timeLength;
-		}
 	}
 
-	private long lastMiddleTime;// 减少绘图次数
-
 	/**
 	 * @MethodName: changeMoveAndValue
 	 * @Function: 实现滑动
@@ -723,15 +1132,14 @@ public class TimeControlView extends View {
 	private void changeMoveAndValue() {
 		distance = getDistance();
 		offset += moveX;
-		long moveTime = (long) ((int) (offset / distance * timeUnit
+		long moveTime = (long) ((int) (offset / distance * model.getTimeUnit()
 				.getTimeUnit()) * 60 * 1000);
-		middleTime = initTime + moveTime;
-		if (lastMiddleTime != middleTime) {
+		long middleTime = initTime + moveTime;
+		if (model.getMiddleTime() != middleTime) {
+			model.setMiddleTime(middleTime);
 			if (mOnMiddleTimeChangeListener != null) {
 				mOnMiddleTimeChangeListener.setOnMiddleTimeChange(middleTime);
 			}
-			lastMiddleTime = middleTime;
-			invalidate();
 		}
 	}
 
@@ -745,32 +1153,156 @@ public class TimeControlView extends View {
 
 	private SimpleDateFormat timeFormatStandard = new SimpleDateFormat(
 			"yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-	private SimpleDateFormat timeFormatMD = new SimpleDateFormat("MM月dd日",
-			Locale.getDefault());
-	private SimpleDateFormat timeFormatH = new SimpleDateFormat("HH",
-			Locale.getDefault());
-	private SimpleDateFormat timeFormatM = new SimpleDateFormat("mm",
-			Locale.getDefault());
 	private Date date = new Date();
+	private TimeZone timeZone = TimeZone.getDefault();
+
+	// 本地时间的天序号
+	private long getLocalDay(long time) {
+		return TickLayout.floorDiv(time + timeZone.getOffset(time),
+				TickLayout.DAY_MS);
+	}
 
 	public String getTimeStandard(long time) {
 		date.setTime(time);
 		return timeFormatStandard.format(date);
 	}
 
-	private String getTimeMD(long time) {
-		date.setTime(time);
-		return timeFormatMD.format(date);
-	}
+	/**
+	 * @ClassName: RulerPainter
+	 * @Function: 绘制随时间滚动的内容，画笔、"09月17日"缓存和绘制尺寸都属于自己，后台线程绘制缩放结果时使用单独的实例
+	 */
+	private class RulerPainter {
+		/**
+		 * "09月17日"缓存，按本地天序号存取，一屏最多显示6天
+		 */
+		private static final int DAY_CACHE_SIZE = 8;
+		private long[] dayCacheKeys = new long[DAY_CACHE_SIZE];
+		private String[] dayCacheTexts = new String[DAY_CACHE_SIZE];
+		private int dayCacheNext;
+		private SimpleDateFormat timeFormatMD = new SimpleDateFormat(
+				"MM月dd日", Locale.getDefault());
+		private Date date = new Date();
+		private TimeZone timeZone = TimeZone.getDefault();
 
-	private int getTimeShortH(long time) {
-		date.setTime(time);
-		return Integer.parseInt(timeFormatH.format(date));
-	}
+		private final Paint commonPaint, periodPaint;
+		private final TextPaint textPaint;
+		private final RectF rect = new RectF();
+		private int width, marginTop, contentHeight;
 
-	private int getTimeShortM(long time) {
-		date.setTime(time);
-		return Integer.parseInt(timeFormatM.format(date));
+		RulerPainter(Paint commonPaint, Paint periodPaint, TextPaint textPaint) {
+			this.commonPaint = commonPaint;
+			this.periodPaint = periodPaint;
+			this.textPaint = textPaint;
+		}
+
+		// 设置绘制尺寸，只能在使用该实例的线程上调用
+		void setGeometry(int width, int marginTop, int contentHeight) {
+			this.width = width;
+			this.marginTop = marginTop;
+			this.contentHeight = contentHeight;
+		}
+
+		void clear() {
+			for (int i = 0; i < DAY_CACHE_SIZE; i++) {
+				dayCacheTexts[i] = null;
+			}
+		}
+
+		// 得到"09月17日"，同一天只格式化一次
+		String getTimeMD(long time) {
+			long day = TickLayout.floorDiv(time + timeZone.getOffset(time),
+					TickLayout.DAY_MS);
+			for (int i = 0; i < DAY_CACHE_SIZE; i++) {
+				if (dayCacheTexts[i] != null && dayCacheKeys[i] == day) {
+					return dayCacheTexts[i];
+				}
+			}
+			date.setTime(time);
+			String text = timeFormatMD.format(date);
+			dayCacheKeys[dayCacheNext] = day;
+			dayCacheTexts[dayCacheNext] = text;
+			dayCacheNext = (dayCacheNext + 1) % DAY_CACHE_SIZE;
+			return text;
+		}
+
+		/**
+		 * @MethodName: draw
+		 * @Function: 绘制随时间滚动的内容：刻度、刻度文字、"09月17日"和回看时间段
+		 * @param layout
+		 *            刻度布局
+		 * @param overscan
+		 *            左右两边超出屏幕绘制的宽度
+		 * @param clipLeft
+		 *            只绘制该x坐标右边的刻度
+		 * @param clipRight
+		 *            只绘制该x坐标左边的刻度
+		 */
+		void draw(Canvas canvas, TickLayout layout, long middleTime,
+				int timeLength, int overscan, float clipLeft, float clipRight) {
+			commonPaint.setColor(Color.argb(255, 100, 100, 100));
+			commonPaint.setStrokeWidth(1f);
+			// 文字最多超出刻度textWidthMD
+			clipLeft -= textWidthMD;
+			clipRight += textWidthMD;
+			float textY = marginTop + MIDDILE_LENGTH + 3 + textHeight;
+			float textMDY = (marginTop - textHeightMD) / 2 + textHeightMD;
+			textPaint.setColor(Color.argb(255, 150, 150, 150));
+			for (int i = 0; i < layout.count; i++) {
+				float x = layout.x[i];
+				if (x < clipLeft || x > clipRight) {
+					continue;
+				}
+				int lineLength = layout.lengths[i];
+				// 绘线
+				if (lineLength == DAY_LENGTH) {
+					commonPaint.setColor(Color.RED);
+					canvas.drawLine(x, marginTop, x,
+							marginTop + DAY_LENGTH, commonPaint);
+					canvas.drawLine(x, contentHeight, x, contentHeight
+							- DAY_LENGTH, commonPaint);
+					commonPaint.setColor(Color.argb(255, 90, 90, 90));
+					// 绘制"09月17日"
+					canvas.drawText(getTimeMD(layout.times[i]), x
+							- textWidthMD / 2, textMDY, textPaint);
+				} else {
+					canvas.drawLine(x, marginTop, x,
+							marginTop + lineLength, commonPaint);
+					canvas.drawLine(x, contentHeight, x, contentHeight
+							- lineLength, commonPaint);
+				}
+				if (layout.labels[i] != TickLayout.NO_LABEL) {
+					canvas.drawText(TickLayout.getLabelText(layout.labels[i]),
+							x, textY, textPaint);
+				}
+			}
+			// 绘画回看时间段区域
+			float periodScale = getPeriodScale(width, timeLength);
+			long overscanTime = (long) (overscan / periodScale);
+			long timeLeft = middleTime - timeLength * TickLayout.MINUTE_MS / 2
+					- overscanTime;
+			long timeRight = middleTime + timeLength * TickLayout.MINUTE_MS / 2
+					+ overscanTime;
+			float middleX = width / 2f;
+			// 后台线程也会调用，只读一次，开始和结束时间一定是同一次设置的
+			RecordPeriods periods = TimeControlView.this.periods;
+			long[] starts = periods.starts, ends = periods.ends;
+			for (int i = 0; i < starts.length; i++) {
+				long timeStart = starts[i];
+				if (timeStart >= timeRight) {
+					break;
+				}
+				long timeEnd = ends[i];
+				if (timeEnd <= timeLeft) {
+					continue;
+				}
+				long drawLeft = timeStart > timeLeft ? timeStart : timeLeft;
+				long drawRight = timeEnd < timeRight ? timeEnd : timeRight;
+				rect.set(middleX + (drawLeft - middleTime) * periodScale,
+						marginTop, middleX + (drawRight - middleTime)
+								* periodScale, contentHeight);
+				canvas.drawRect(rect, periodPaint);
+			}
+		}
 	}
 
 	public interface OnMiddleTimeChangeListener {
@@ -788,13 +1320,170 @@ public class TimeControlView extends View {
 		}
 	}
 
-	/** 设置当前时间 */
+	/**
+	 * @ClassName: SeekHintListener
+	 * @Function: 拖动过程中预测的停止位置，可以提前打开对应的录像时间段
+	 */
+	public interface SeekHintListener {
+		/**
+		 * @param landingTime
+		 *            吸附到回看时间段后的预计停止时间，手指抬起或手势被取消时为实际停止时间
+		 * @param segmentStart
+		 *            所在时间段的开始时间，没有回看时间段时为-1
+		 * @param segmentEnd
+		 *            所在时间段的结束时间，没有回看时间段时为-1
+		 */
+		void onSeekHint(long landingTime, long segmentStart, long segmentEnd);
+	}
+
+	/** 拖动停止位置预测回调 */
+	public void setSeekHintListener(SeekHintListener mSeekHintListener) {
+		if (mSeekHintListener != null) {
+			this.mSeekHintListener = mSeekHintListener;
+		} else {
+			throw new IllegalArgumentException("SeekHintListener is null!");
+		}
+	}
+
+	/** 设置当前时间，可以在子线程调用，见{@link TimelineModel#setMiddleTime} */
 	public void setMiddleTime(Long time) {
-		if (middleTime == time) {
+		model.setMiddleTime(time);
+	}
+
+	/** 得到当前时间 */
+	public long getMiddleTime() {
+		return model.getMiddleTime();
+	}
+
+	/**
+	 * 绑定时间卡尺数据，多个View绑定同一个model时同步滚动和缩放，并共用刻度计算结果
+	 */
+	public void setTimelineModel(TimelineModel model) {
+		if (model == null) {
+			throw new IllegalArgumentException("the TimelineModel is null");
+		}
+		if (this.model == model) {
 			return;
 		}
-		this.middleTime = time;
-		postInvalidate();
+		if (attached) {
+			this.model.detach(this);
+			model.attach(this);
+		}
+		this.model = model;
+		initTime = model.getMiddleTime();
+		offset = 0;
+		distance = getDistance();
+		redrawTimeUnit = null;
+		requestRedraw();
+	}
+
+	public TimelineModel getTimelineModel() {
+		return model;
+	}
+
+	/** 设置绘制统计，传null停止统计 */
+	public void setFrameStats(FrameStats frameStats) {
+		this.frameStats = frameStats;
+	}
+
+	/**
+	 * @MethodName: requestRedraw
+	 * @Function: model数据变化后请求重绘，只重绘受影响的区域
+	 *            <Li>缩放：整个View</Li>
+	 *            <Li>滚动：刻度区域；中间时间跨天或屏幕上有天刻度时（"09月17日"随刻度移动）再加上顶部区域</Li>
+	 *            <Li>区域刷新只在软件绘制时减少重绘：硬件加速下invalidate的区域被忽略，整个View都会重新绘制</Li>
+	 */
+	void requestRedraw() {
+		long middleTime = model.getMiddleTime();
+		int timeLength = model.getTimeLength();
+		TimeUnit timeUnit = model.getTimeUnit();
+		long day = getLocalDay(middleTime);
+		if (following && timeLength == redrawTimeLength
+				&& timeUnit == redrawTimeUnit && day == redrawDay
+				&& middleTime != redrawMiddleTime
+				&& Math.abs(middleTime - redrawMiddleTime)
+						* getPeriodScale(timeLength) < FOLLOW_REDRAW_PX) {
+			// 跟随播放移动不到FOLLOW_REDRAW_PX，不重绘；redrawMiddleTime不更新，移动量继续累计
+			return;
+		}
+		boolean hasDayTick;
+		if (following) {
+			// 跟随播放时每帧都会走到这里，不为判断日期刻度重新计算布局，直接扫描跟随缓存的布局（包含左右overscan）
+			hasDayTick = followCacheTimeUnit != timeUnit
+					|| followCacheTimeLength != timeLength
+					|| hasDayTick(followLayout);
+		} else {
+			hasDayTick = hasDayTick(model.getTickLayout(viewWidth));
+		}
+		if (timeLength != redrawTimeLength || timeUnit != redrawTimeUnit
+				|| middleTime == redrawMiddleTime) {
+			// 缩放，或者没有变化时的主动刷新
+			invalidateRegion(0, 0, viewWidth, height, false);
+		} else {
+			// 刻度线、回看时间段和下方箭头
+			invalidateRegion(0, margin_top - 1, viewWidth, height, false);
+			if (day != redrawDay || hasDayTick || redrawHasDayTick) {
+				invalidateRegion(0, 0, viewWidth, margin_top - 1, false);
+			}
+		}
+		redrawMiddleTime = middleTime;
+		redrawTimeLength = timeLength;
+		redrawTimeUnit = timeUnit;
+		redrawDay = day;
+		redrawHasDayTick = hasDayTick;
+	}
+
+	private static boolean hasDayTick(TickLayout layout) {
+		for (int i = 0; i < layout.count; i++) {
+			if (layout.lengths[i] == DAY_LENGTH) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 请求重绘指定区域，并计入绘制统计。带区域的invalidate从API 28起已过时，
+	// 硬件加速下区域被忽略，只对软件绘制有效
+	@SuppressWarnings("deprecation")
+	private void invalidateRegion(int left, int top, int right, int bottom,
+			boolean post) {
+		if (frameStats != null) {
+			frameStats.onInvalidate(left, top, right, bottom);
+		}
+		if (post) {
+			postInvalidate(left, top, right, bottom);
+		} else {
+			invalidate(left, top, right, bottom);
+		}
+	}
+
+	// 每毫秒对应的像素，用于绘制回看时间段
+	private float getPeriodScale(int timeLength) {
+		return getPeriodScale(viewWidth, timeLength);
+	}
+
+	private static float getPeriodScale(int width, int timeLength) {
+		return width * 1.0f / (timeLength * TickLayout.MINUTE_MS);
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		attached = true;
+		model.attach(this);
+		if (following) {
+			resumeFollow();
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		model.detach(this);
+		attached = false;
+		Choreographer.getInstance().removeFrameCallback(followCallback);
+		releaseFollowCache(true);
+		releaseZoom();
+		super.onDetachedFromWindow();
 	}
 
 	/** 设置视频回看的所有时间段 ，时间单位：毫秒 */
@@ -806,17 +1495,92 @@ public class TimeControlView extends View {
 				this.listTimeMap = new HashMap<String, String>();
 			}
 			this.listTimeMap.putAll(listTimeMap);
-			postInvalidate();
+			RecordPeriods old = periods;
+			periods = parseRecordPeriods();
+			invalidatePeriods(old, periods);
 		} else {
 			throw new IllegalArgumentException("the listTimeMap is null");
 		}
 	}
 
+	// 把回看时间段解析成按开始时间排序的数组，避免在onDraw中解析字符串
+	private RecordPeriods parseRecordPeriods() {
+		TreeMap<Long, Long> sorted = new TreeMap<Long, Long>();
+		Iterator<Map.Entry<String, String>> iterator = listTimeMap.entrySet()
+				.iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, String> entry = iterator.next();
+			sorted.put(Long.parseLong(entry.getKey()),
+					Long.parseLong(entry.getValue()));
+		}
+		long[] starts = new long[sorted.size()];
+		long[] ends = new long[sorted.size()];
+		int i = 0;
+		for (Map.Entry<Long, Long> entry : sorted.entrySet()) {
+			starts[i] = entry.getKey();
+			ends[i] = entry.getValue();
+			i++;
+		}
+		return new RecordPeriods(starts, ends);
+	}
+
+	/**
+	 * @MethodName: invalidatePeriods
+	 * @Function: 只重绘回看时间段变化部分在屏幕内的区域，变化都在屏幕外时不重绘。
+	 *            开始时间相同的时间段只重绘结束时间变化的部分，录像中追加的时间段只刷新新增的一小段
+	 */
+	private void invalidatePeriods(RecordPeriods oldPeriods,
+			RecordPeriods newPeriods) {
+		long[] oldStarts = oldPeriods.starts, oldEnds = oldPeriods.ends;
+		long[] newStarts = newPeriods.starts, newEnds = newPeriods.ends;
+		long middleTime = model.getMiddleTime();
+		int timeLength = model.getTimeLength();
+		long timeLeft = middleTime - timeLength * TickLayout.MINUTE_MS / 2;
+		long timeRight = middleTime + timeLength * TickLayout.MINUTE_MS / 2;
+		long dirtyLeft = Long.MAX_VALUE, dirtyRight = Long.MIN_VALUE;
+		int i = 0, j = 0;
+		while (i < oldStarts.length || j < newStarts.length) {
+			long from, to;
+			if (j >= newStarts.length
+					|| (i < oldStarts.length && oldStarts[i] < newStarts[j])) {
+				// 删除的时间段
+				from = oldStarts[i];
+				to = oldEnds[i];
+				i++;
+			} else if (i >= oldStarts.length || newStarts[j] < oldStarts[i]) {
+				// 新增的时间段
+				from = newStarts[j];
+				to = newEnds[j];
+				j++;
+			} else {
+				from = Math.min(oldEnds[i], newEnds[j]);
+				to = Math.max(oldEnds[i], newEnds[j]);
+				i++;
+				j++;
+			}
+			from = Math.max(from, timeLeft);
+			to = Math.min(to, timeRight);
+			if (from < to) {
+				dirtyLeft = Math.min(dirtyLeft, from);
+				dirtyRight = Math.max(dirtyRight, to);
+			}
+		}
+		if (dirtyLeft >= dirtyRight) {
+			return;
+		}
+		float periodScale = getPeriodScale(timeLength);
+		int left = (int) Math.floor((dirtyLeft - timeLeft) * periodScale) - 1;
+		int right = (int) Math.ceil((dirtyRight - timeLeft) * periodScale) + 1;
+		invalidateRegion(Math.max(0, left), margin_top, Math.min(viewWidth,
+				right), contentheight, true);
+	}
+
 	/** 内测回看时间段代码 */
 	private void testListTimeMap() {
 		listTimeMap = new HashMap<String, String>();
 		listTimeMap.put("1447917180000", "1447920780000");
 		listTimeMap.put("1447924380000", "1447927980000");
 		listTimeMap.put("1447931580000", "1447935180000");
+		periods = parseRecordPeriods();
 	}
 }
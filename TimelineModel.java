@@ -0,0 +1,258 @@
+/**
+ * Project Name:  ListViewDemo
+ * File Name:     TimelineModel.java
+ * Package Name:  com.wulian.icam.view.widget
+ * Copyright (c)  2015, wulian All Rights Reserved.
+ */
+
+package com.wulian.icam.view.widget;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.wulian.icam.view.widget.TimeControlView.TimeUnit;
+
+/**
+ * @ClassName: TimelineModel
+ * @Function: 时间卡尺的共享数据（中间时间、时间长度、时间单位），多个{@link TimeControlView}
+ *            可以绑定同一个model同步滚动和缩放 <Li>同一宽度的刻度布局每帧只计算一次，由所有绑定的View共用</Li>
+ *            <Li>数据变化时在下一帧统一刷新所有绑定的View，而不是每个View各自postInvalidate</Li>
+ *            <Li>数据只在主线程读写，子线程调用setter时修改本身会post到主线程执行</Li>
+ *
+ *            <pre>
+ * TimelineModel model = new TimelineModel();
+ * for (TimeControlView view : gridViews) {
+ * 	view.setTimelineModel(model);
+ * }
+ * model.setMiddleTime(initTime);
+ * </pre>
+ */
+public class TimelineModel {
+	/**
+	 * 同时缓存的不同宽度的刻度布局个数
+	 */
+	private static final int LAYOUT_CACHE_SIZE = 4;
+
+	/**
+	 * 中间时间，毫秒
+	 */
+	private long middleTime;
+	/**
+	 * 时间长度（一屏幕显示的总时间），分钟
+	 */
+	private int timeLength;
+	/**
+	 * 时间单位，具体查看{@link TimeUnit}
+	 */
+	private TimeUnit timeUnit;
+
+	/**
+	 * 绑定的View
+	 */
+	private final ArrayList<TimeControlView> views = new ArrayList<TimeControlView>();
+	private final TickLayout[] layouts = new TickLayout[LAYOUT_CACHE_SIZE];
+	private int nextLayout;
+
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private boolean invalidatePending;
+
+	public TimelineModel() {
+		this(System.currentTimeMillis() / 60 / 1000 * 60 * 1000 - 60 * 60
+				* 1000);
+	}
+
+	/**
+	 * @param middleTime
+	 *            初始的中间时间，毫秒
+	 */
+	public TimelineModel(long middleTime) {
+		this.middleTime = middleTime;
+		this.timeLength = TimeControlView.TEN_HOUR;
+		this.timeUnit = TimeUnit.TWO_MINUTE;
+	}
+
+	public long getMiddleTime() {
+		return middleTime;
+	}
+
+	public int getTimeLength() {
+		return timeLength;
+	}
+
+	public TimeUnit getTimeUnit() {
+		return timeUnit;
+	}
+
+	/**
+	 * 设置中间时间，所有绑定的View在下一帧刷新。子线程调用时修改post到主线程执行，返回后getMiddleTime可能还是旧值
+	 */
+	public void setMiddleTime(final long middleTime) {
+		if (Looper.myLooper() != Looper.getMainLooper()) {
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					setMiddleTime(middleTime);
+				}
+			});
+			return;
+		}
+		if (this.middleTime == middleTime) {
+			return;
+		}
+		this.middleTime = middleTime;
+		invalidateViews();
+	}
+
+	/**
+	 * @MethodName: setScale
+	 * @Function: 设置缩放级别，所有绑定的View在下一帧刷新。子线程调用时同{@link #setMiddleTime}
+	 * @param timeLength
+	 *            一屏显示的总时间，分钟，必须在时间单位允许的范围内：24分钟为1天到5天，2分钟为2小时到10小时，
+	 *            1分钟为1小时到5小时，与双指缩放能到达的范围一致
+	 * @param timeUnit
+	 *            时间单位
+	 */
+	public void setScale(final int timeLength, final TimeUnit timeUnit) {
+		if (timeUnit == null) {
+			throw new IllegalArgumentException("the timeUnit is null");
+		}
+		if (timeLength < getMinTimeLength(timeUnit)
+				|| timeLength > getMaxTimeLength(timeUnit)) {
+			throw new IllegalArgumentException("the timeLength " + timeLength
+					+ " is out of range for " + timeUnit);
+		}
+		if (Looper.myLooper() != Looper.getMainLooper()) {
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					setScale(timeLength, timeUnit);
+				}
+			});
+			return;
+		}
+		if (this.timeLength == timeLength && this.timeUnit == timeUnit) {
+			return;
+		}
+		this.timeLength = timeLength;
+		this.timeUnit = timeUnit;
+		invalidateViews();
+	}
+
+	/** 时间单位允许的最小时间长度，分钟 */
+	static int getMinTimeLength(TimeUnit timeUnit) {
+		switch (timeUnit) {
+		case TWENTY_FOUR_MINUTE:
+			return TimeControlView.ONE_DAY;
+		case TWO_MINUTE:
+			return TimeControlView.TWO_HOUR;
+		default:
+			return TimeControlView.ONE_HOUR;
+		}
+	}
+
+	/** 时间单位允许的最大时间长度，分钟 */
+	static int getMaxTimeLength(TimeUnit timeUnit) {
+		switch (timeUnit) {
+		case TWENTY_FOUR_MINUTE:
+			return TimeControlView.FIVE_DAY;
+		case TWO_MINUTE:
+			return TimeControlView.TEN_HOUR;
+		default:
+			return TimeControlView.FIVE_HOUR;
+		}
+	}
+
+	/**
+	 * @MethodName: getTickLayout
+	 * @Function: 得到当前数据下指定宽度的刻度布局，同一帧内多个View共用计算结果
+	 * @param width
+	 *            View的实际宽度，不同宽度的View各自缓存
+	 */
+	TickLayout getTickLayout(int width) {
+		TickLayout layout = null;
+		for (int i = 0; i < LAYOUT_CACHE_SIZE; i++) {
+			if (layouts[i] != null && layouts[i].width == width) {
+				layout = layouts[i];
+				break;
+			}
+		}
+		if (layout == null) {
+			if (layouts[nextLayout] == null) {
+				layouts[nextLayout] = new TickLayout();
+			}
+			layout = layouts[nextLayout];
+			nextLayout = (nextLayout + 1) % LAYOUT_CACHE_SIZE;
+		}
+		layout.compute(middleTime, timeLength, timeUnit, width);
+		return layout;
+	}
+
+	/** 清空刻度布局缓存 */
+	void reset() {
+		for (int i = 0; i < LAYOUT_CACHE_SIZE; i++) {
+			if (layouts[i] != null) {
+				layouts[i].reset();
+			}
+		}
+	}
+
+	void attach(TimeControlView view) {
+		if (!views.contains(view)) {
+			views.add(view);
+		}
+	}
+
+	void detach(TimeControlView view) {
+		views.remove(view);
+	}
+
+	boolean isAttached(TimeControlView view) {
+		return views.contains(view);
+	}
+
+	/**
+	 * @MethodName: invalidateViews
+	 * @Function: 合并同一帧内的多次修改，在下一帧统一刷新所有绑定的View
+	 */
+	void invalidateViews() {
+		if (Looper.myLooper() != Looper.getMainLooper()) {
+			mainHandler.post(postFrameRunnable);
+			return;
+		}
+		if (invalidatePending) {
+			return;
+		}
+		invalidatePending = true;
+		Choreographer.getInstance().postFrameCallback(invalidateCallback);
+	}
+
+	/**
+	 * 立即执行等待中的刷新，不再等下一帧，供{@link GestureTraceReplayer}等在主线程同步回放时使用
+	 */
+	void flushInvalidate() {
+		if (invalidatePending) {
+			Choreographer.getInstance().removeFrameCallback(invalidateCallback);
+			invalidateCallback.doFrame(System.nanoTime());
+		}
+	}
+
+	private final Runnable postFrameRunnable = new Runnable() {
+		@Override
+		public void run() {
+			invalidateViews();
+		}
+	};
+
+	private final Choreographer.FrameCallback invalidateCallback = new Choreographer.FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			invalidatePending = false;
+			for (int i = 0; i < views.size(); i++) {
+				views.get(i).requestRedraw();
+			}
+		}
+	};
+}